@@ -0,0 +1,108 @@
+package com.health_insurance.integration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.health_insurance.phm_model.Response;
+import com.health_insurance.phm_model.Trigger;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per trigger work of the {@code makeDecision} and {@code startProcess} routes outside the kie-server calls:
+ * building the decision facts, grouping them into a batch and turning decision results into process variables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineProcessorsBenchmark {
+
+    /** triggers per decision batch */
+    @Param({"50"})
+    int batchSize;
+
+    private CamelContext context;
+    private DecisionFactsProcessor decisionFacts;
+    private ProcessVariablesProcessor processVariables;
+    private ItemHeadersAggregationStrategy aggregation;
+    private Trigger trigger;
+    private Map<String, Object> decisionResult;
+
+    @Setup
+    public void setup() {
+        context = new DefaultCamelContext();
+        decisionFacts = new DecisionFactsProcessor();
+        processVariables = new ProcessVariablesProcessor();
+        aggregation = new ItemHeadersAggregationStrategy();
+
+        trigger = new Trigger();
+        trigger.setTriggerId(184);
+        trigger.setMemberId("test123");
+
+        List<Object> resultFactObjects = new ArrayList<>();
+        resultFactObjects.add(trigger);
+        resultFactObjects.add(new Response());
+        resultFactObjects.add(new Response());
+        decisionResult = new HashMap<>();
+        decisionResult.put("isertedFactObject_184", trigger);
+        decisionResult.put("firedRules", 2);
+        decisionResult.put("resultFactObjects", resultFactObjects);
+    }
+
+    @Benchmark
+    public Object makeDecisionFacts() throws Exception {
+        Exchange exchange = kafkaExchange(trigger);
+        decisionFacts.process(exchange);
+        return exchange.getIn().getBody();
+    }
+
+    @Benchmark
+    public Object makeDecisionBatch() throws Exception {
+        Exchange batch = null;
+        for (int i = 0; i < batchSize; i++) {
+            Exchange exchange = kafkaExchange(trigger);
+            decisionFacts.process(exchange);
+            batch = aggregation.aggregate(batch, exchange);
+        }
+        return batch.getIn().getBody();
+    }
+
+    @Benchmark
+    public Object startProcessVariables() throws Exception {
+        Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody(decisionResult);
+        processVariables.process(exchange);
+        return exchange.getIn().getBody();
+    }
+
+    private Exchange kafkaExchange(Trigger body) {
+        Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setHeader(KafkaConstants.TOPIC, "phm-trigger");
+        exchange.getIn().setHeader(KafkaConstants.PARTITION, 0);
+        exchange.getIn().setHeader(KafkaConstants.OFFSET, 42L);
+        exchange.getIn().setHeader(KafkaConstants.KEY, body.getMemberId());
+        exchange.getIn().setBody(body);
+        return exchange;
+    }
+}
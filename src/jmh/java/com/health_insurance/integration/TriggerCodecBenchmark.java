@@ -0,0 +1,53 @@
+package com.health_insurance.integration;
+
+import java.util.concurrent.TimeUnit;
+
+import com.health_insurance.phm_model.Trigger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Trigger} (de)serialization as done by the Kafka producer and consumer
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TriggerCodecBenchmark {
+
+    private TriggerSerializer serializer;
+    private TriggerDeserializer deserializer;
+    private Trigger trigger;
+    private byte[] encoded;
+
+    @Setup
+    public void setup() {
+        serializer = new TriggerSerializer();
+        deserializer = new TriggerDeserializer();
+        trigger = new Trigger();
+        trigger.setTriggerId(184);
+        trigger.setMemberId("test123");
+        encoded = serializer.serialize("phm-trigger", trigger);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return serializer.serialize("phm-trigger", trigger);
+    }
+
+    @Benchmark
+    public Trigger deserialize() {
+        return deserializer.deserialize("phm-trigger", encoded);
+    }
+}
@@ -0,0 +1,138 @@
+package com.health_insurance.kie;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.health_insurance.phm_model.Response;
+import com.health_insurance.phm_model.Trigger;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.kie.api.command.BatchExecutionCommand;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link BusinessAutomationClient} hot paths: building and marshalling the decision commands, and the
+ * decision and process start round trips, single and batched (one script per batch), against an
+ * in-process {@link KieServerStub}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class KieClientBenchmark {
+
+  private static final String DECISION_CONTAINER = "PHM-Rules";
+  private static final String DECISION_SESSION = "myStateless";
+  private static final String PROCESS_CONTAINER = "PHM-Processes";
+  private static final String PROCESS_DEFINITION = "PHM-Processes.Trigger";
+
+  /** fixed kie-server service time, in microseconds */
+  @Param({"0"})
+  long stubDelayMicros;
+
+  /** decisions and process starts per batched call */
+  @Param({"50"})
+  int batchSize;
+
+  private KieServerStub stub;
+  private KieServerTransport transport;
+  private BusinessAutomationClient client;
+  private HashMap<String, Object> facts;
+  private Map<String, Object> variables;
+  private List<Map<String, Object>> factSets;
+  private List<Map<String, Object>> variablesList;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    stub = KieServerStub.start(8, stubDelayMicros);
+
+    transport = new KieServerTransport();
+    transport.kieServerUrl = stub.getUrl();
+    transport.kieServerUser = "kieAdmin";
+    transport.kieServerPassword = "kieAdmin";
+    transport.maxConcurrentCalls = 50;
+    transport.timeout = 30000;
+    transport.initialize();
+
+    // breakers and bulkheads off: measure the client itself
+    KieCallGuard guard = new KieCallGuard();
+    guard.enabled = false;
+
+    client = new BusinessAutomationClient();
+    client.transport = transport;
+    client.guard = guard;
+    client.meterRegistry = new SimpleMeterRegistry();
+    client.resultClass = Response.class;
+
+    Trigger trigger = new Trigger();
+    trigger.setTriggerId(184);
+    trigger.setMemberId("test123");
+    facts = new HashMap<String, Object>();
+    facts.put(Integer.toString(trigger.getTriggerId()), trigger);
+
+    variables = new HashMap<String, Object>();
+    variables.put("pDataList", new ArrayList<Object>());
+
+    factSets = new ArrayList<Map<String, Object>>();
+    variablesList = new ArrayList<Map<String, Object>>();
+    for (int i = 0; i < batchSize; i++) {
+      factSets.add(new HashMap<String, Object>(facts));
+      variablesList.add(new HashMap<String, Object>(variables));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    transport.closeResources();
+    stub.stop();
+  }
+
+  @Benchmark
+  public BatchExecutionCommand buildCommands() {
+    return client.newBatchCommand(DECISION_SESSION, facts);
+  }
+
+  @Benchmark
+  public String buildAndMarshallCommands() {
+    return transport.getMarshaller().marshall(client.newBatchCommand(DECISION_SESSION, facts));
+  }
+
+  @Benchmark
+  public Map<String, Object> executeCommands() {
+    return client.executeCommands(DECISION_CONTAINER, DECISION_SESSION, facts);
+  }
+
+  @Benchmark
+  public List<Map<String, Object>> executeBatch() {
+    return client.executeBatch(DECISION_CONTAINER, DECISION_SESSION, factSets);
+  }
+
+  @Benchmark
+  public Long startProcess() {
+    return client.startProcess(PROCESS_CONTAINER, PROCESS_DEFINITION, variables);
+  }
+
+  @Benchmark
+  public List<ProcessStartResult> startProcesses() {
+    return client.startProcesses(PROCESS_CONTAINER, PROCESS_DEFINITION, variablesList);
+  }
+}
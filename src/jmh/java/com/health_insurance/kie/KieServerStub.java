@@ -0,0 +1,166 @@
+package com.health_insurance.kie;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process stand-in for the kie-server REST API, good enough for the {@link BusinessAutomationClient}
+ * calls used by the pipeline: server info, rules execution on a container (single or batched in a command
+ * script) and process start (single or batched in a command script).
+ *
+ * Responses are canned (the rules response is a real PHM-Rules reply) and returned after an optional fixed
+ * delay, so benchmarks measure the client side (marshalling, connections) instead of the rules.
+ */
+public class KieServerStub {
+
+  private static final String BASE_PATH = "/kie-server/services/rest/server";
+  private static final String SERVER_INFO = "{\"type\":\"SUCCESS\",\"msg\":\"Kie Server info\",\"result\":{\"kie-server-info\":"
+    + "{\"id\":\"kie-server-stub\",\"version\":\"7.33.0.Final\",\"name\":\"kie-server-stub\",\"location\":null,"
+    + "\"capabilities\":[\"KieServer\",\"BRM\",\"BPM\"],\"messages\":[]}}}";
+  private static final String PROCESS_START_ITEM = "{\"type\":\"SUCCESS\",\"msg\":\"Process started\",\"result\":\"1\"}";
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final byte[] serverInfo;
+  private final byte[] executeCommands;
+  private final String scriptResponseItem;
+  private final long delayMicros;
+
+  private KieServerStub(int threads, long delayMicros) throws IOException {
+    this.delayMicros = delayMicros;
+    this.serverInfo = SERVER_INFO.getBytes(StandardCharsets.UTF_8);
+    this.executeCommands = readResource("/kie-stub/execute-commands.json");
+    this.scriptResponseItem = scriptResponseItem(executeCommands);
+    this.executor = Executors.newFixedThreadPool(threads);
+    this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext(BASE_PATH, this::handle);
+    server.setExecutor(executor);
+  }
+
+  /**
+   * Start a stub on a free local port
+   *
+   * @param threads request handling threads
+   * @param delayMicros fixed service time added to every response
+   */
+  public static KieServerStub start(int threads, long delayMicros) throws IOException {
+    KieServerStub stub = new KieServerStub(threads, delayMicros);
+    stub.server.start();
+    return stub;
+  }
+
+  public String getUrl() {
+    return "http://localhost:" + server.getAddress().getPort() + BASE_PATH;
+  }
+
+  public void stop() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    String request = read(exchange.getRequestBody());
+    String path = exchange.getRequestURI().getPath().substring(BASE_PATH.length());
+    String method = exchange.getRequestMethod();
+
+    byte[] response;
+    if ("GET".equals(method) && (path.isEmpty() || "/".equals(path))) {
+      response = serverInfo;
+    } else if ("POST".equals(method) && path.startsWith("/containers/instances/")) {
+      response = executeCommands;
+    } else if ("POST".equals(method) && "/config".equals(path) && request.contains("\"descriptor-command\"")) {
+      response = scriptResponse(count(request, "\"descriptor-command\""), PROCESS_START_ITEM);
+    } else if ("POST".equals(method) && "/config".equals(path)) {
+      response = scriptResponse(count(request, "\"call-container\""), scriptResponseItem);
+    } else if ("POST".equals(method) && path.matches("/containers/[^/]+/processes/[^/]+/instances")) {
+      response = "1".getBytes(StandardCharsets.UTF_8);
+    } else {
+      exchange.sendResponseHeaders(404, -1);
+      exchange.close();
+      return;
+    }
+
+    if (delayMicros > 0) {
+      try {
+        TimeUnit.MICROSECONDS.sleep(delayMicros);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(200, response.length);
+    try (OutputStream body = exchange.getResponseBody()) {
+      body.write(response);
+    }
+  }
+
+  /**
+   * A command script answers with one response per command: container calls carry the marshalled
+   * execution results as a string, process starts the new process instance id
+   */
+  private static byte[] scriptResponse(int calls, String item) {
+    StringBuilder response = new StringBuilder("{\"response\":[");
+    for (int i = 0; i < Math.max(1, calls); i++) {
+      response.append(i == 0 ? "" : ",").append(item);
+    }
+    return response.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String scriptResponseItem(byte[] executeCommands) throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    JsonNode executionResults = mapper.readTree(executeCommands).path("result").path("execution-results");
+    ObjectNode item = mapper.createObjectNode();
+    item.put("type", "SUCCESS");
+    item.put("msg", "Container PHM-Rules successfully called.");
+    item.put("result", mapper.writeValueAsString(executionResults));
+    return mapper.writeValueAsString(item);
+  }
+
+  private static int count(String text, String token) {
+    int count = 0;
+    for (int i = text.indexOf(token); i >= 0; i = text.indexOf(token, i + token.length())) {
+      count++;
+    }
+    return count;
+  }
+
+  private static String read(InputStream in) throws IOException {
+    try (InputStream body = in) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = body.read(buffer)) >= 0) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static byte[] readResource(String name) throws IOException {
+    try (InputStream in = KieServerStub.class.getResourceAsStream(name)) {
+      if (in == null) {
+        throw new IOException("missing stub response " + name);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    }
+  }
+}
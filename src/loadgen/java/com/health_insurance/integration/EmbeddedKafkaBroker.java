@@ -0,0 +1,89 @@
+package com.health_insurance.integration;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+import kafka.server.KafkaConfig;
+import kafka.server.KafkaServerStartable;
+
+import org.apache.zookeeper.server.ServerCnxnFactory;
+import org.apache.zookeeper.server.ZooKeeperServer;
+
+/**
+ * Single node ZooKeeper and Kafka broker in the current JVM, on free local ports and a temporary directory
+ */
+public class EmbeddedKafkaBroker {
+
+    private final Path dir;
+    private ServerCnxnFactory zookeeper;
+    private KafkaServerStartable kafka;
+    private int port;
+
+    private EmbeddedKafkaBroker() throws IOException {
+        this.dir = Files.createTempDirectory("phm-loadgen-kafka");
+    }
+
+    /**
+     * Start a broker creating topics on first use with the given number of partitions
+     */
+    public static EmbeddedKafkaBroker start(int partitions) throws Exception {
+        EmbeddedKafkaBroker broker = new EmbeddedKafkaBroker();
+        broker.startup(partitions);
+        return broker;
+    }
+
+    private void startup(int partitions) throws Exception {
+        Path zookeeperDir = Files.createDirectories(dir.resolve("zookeeper"));
+        zookeeper = ServerCnxnFactory.createFactory(new InetSocketAddress("localhost", 0), 100);
+        zookeeper.startup(new ZooKeeperServer(zookeeperDir.toFile(), zookeeperDir.toFile(), 2000));
+
+        port = freePort();
+        Properties config = new Properties();
+        config.put("broker.id", "0");
+        config.put("zookeeper.connect", "localhost:" + zookeeper.getLocalPort());
+        config.put("listeners", "PLAINTEXT://localhost:" + port);
+        config.put("log.dirs", dir.resolve("kafka").toString());
+        config.put("num.partitions", Integer.toString(partitions));
+        config.put("auto.create.topics.enable", "true");
+        config.put("offsets.topic.replication.factor", "1");
+        config.put("offsets.topic.num.partitions", "1");
+        config.put("transaction.state.log.replication.factor", "1");
+        config.put("transaction.state.log.min.isr", "1");
+        config.put("group.initial.rebalance.delay.ms", "0");
+        kafka = new KafkaServerStartable(new KafkaConfig(config));
+        kafka.startup();
+    }
+
+    public String getHost() {
+        return "localhost";
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void stop() throws IOException {
+        if (kafka != null) {
+            kafka.shutdown();
+            kafka.awaitShutdown();
+        }
+        if (zookeeper != null) {
+            zookeeper.shutdown();
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
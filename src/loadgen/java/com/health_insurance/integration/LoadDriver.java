@@ -0,0 +1,313 @@
+package com.health_insurance.integration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+import com.health_insurance.kie.KieServerStub;
+import com.health_insurance.phm_model.Trigger;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.AdviceWithRouteBuilder;
+import org.apache.camel.model.ModelCamelContext;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Self-contained load driver: starts an embedded Kafka broker, a kie-server stub and the service itself
+ * (Spring profile {@code loadgen}), then publishes Triggers at a series of target rates and measures the
+ * end-to-end latency from publication to the end of the process start stage.
+ *
+ * Latency is measured from the time each trigger was scheduled to be sent, not the time it was actually
+ * sent, so a stalled sender does not hide the queueing delay (coordinated omission correction).
+ * Rates are stepped up until one can not be sustained: every trigger completed, throughput within 95% of
+ * the target and p99 under the SLO.
+ *
+ * Options ({@code --loadgen.<name>=<value>}, anything else is handed to the service):
+ * <ul>
+ * <li>{@code rates}: comma separated target rates in triggers/s (default 500,1000,2000,4000)</li>
+ * <li>{@code step-duration}: seconds per rate (default 30)</li>
+ * <li>{@code drain-timeout}: seconds to wait for the last triggers of a step (default 30)</li>
+ * <li>{@code slo-p99-ms}: p99 end-to-end latency allowed for a sustained rate (default 1000)</li>
+ * <li>{@code file}: NDJSON file of Triggers to replay (one JSON per line), synthesized Triggers otherwise</li>
+ * <li>{@code partitions}: partitions of the trigger topic and Kafka consumers (default 4)</li>
+ * <li>{@code kie-delay-micros}: service time of the kie-server stub (default 2000)</li>
+ * <li>{@code kie-threads}: request threads of the kie-server stub (default 32)</li>
+ * </ul>
+ */
+public class LoadDriver {
+
+    private static final String OPTION_PREFIX = "--loadgen.";
+
+    private final CamelContext camelContext;
+    private final KafkaProducer<String, Trigger> producer;
+    private final String topic;
+    private final List<String> replayLines;
+    private final AtomicLong lastCompletion = new AtomicLong();
+    private volatile Step current;
+    private int nextTriggerId = 1;
+
+    LoadDriver(CamelContext camelContext, KafkaProducer<String, Trigger> producer, String topic, List<String> replayLines) {
+        this.camelContext = camelContext;
+        this.producer = producer;
+        this.topic = topic;
+        this.replayLines = replayLines;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith(OPTION_PREFIX) && arg.contains("=")) {
+                options.put(arg.substring(OPTION_PREFIX.length(), arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            } else {
+                appArgs.add(arg);
+            }
+        }
+        List<Integer> rates = new ArrayList<>();
+        for (String rate : options.getOrDefault("rates", "500,1000,2000,4000").split(",")) {
+            rates.add(Integer.parseInt(rate.trim()));
+        }
+        int stepSeconds = Integer.parseInt(options.getOrDefault("step-duration", "30"));
+        int drainSeconds = Integer.parseInt(options.getOrDefault("drain-timeout", "30"));
+        double sloP99Millis = Double.parseDouble(options.getOrDefault("slo-p99-ms", "1000"));
+        int partitions = Integer.parseInt(options.getOrDefault("partitions", "4"));
+        String topic = "phm-trigger";
+
+        List<String> replayLines = null;
+        if (options.containsKey("file")) {
+            replayLines = Files.readAllLines(Paths.get(options.get("file")), StandardCharsets.UTF_8).stream()
+                .filter(l -> !l.trim().isEmpty())
+                .collect(Collectors.toList());
+        }
+
+        KieServerStub kieServer = KieServerStub.start(Integer.parseInt(options.getOrDefault("kie-threads", "32")),
+            Long.parseLong(options.getOrDefault("kie-delay-micros", "2000")));
+        EmbeddedKafkaBroker kafka = EmbeddedKafkaBroker.start(partitions);
+
+        List<String> serviceArgs = new ArrayList<>();
+        serviceArgs.add("--spring.profiles.active=loadgen");
+        serviceArgs.add("--kafka.topic=" + topic);
+        serviceArgs.add("--kafka.host=" + kafka.getHost());
+        serviceArgs.add("--kafka.port=" + kafka.getPort());
+        serviceArgs.add("--kafka.consumers=" + partitions);
+        serviceArgs.add("--kie.server.url=" + kieServer.getUrl());
+        serviceArgs.add("--kie.spillover.file=" + Files.createTempFile("phm-loadgen-spillover", ".ndjson"));
+        serviceArgs.addAll(appArgs);
+        ConfigurableApplicationContext service = new SpringApplicationBuilder(Application.class)
+            .run(serviceArgs.toArray(new String[serviceArgs.size()]));
+
+        Properties producerConfig = new Properties();
+        producerConfig.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafka.getHost() + ":" + kafka.getPort());
+        producerConfig.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        producerConfig.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, TriggerSerializer.class.getName());
+        producerConfig.put(ProducerConfig.LINGER_MS_CONFIG, "1");
+        producerConfig.put(ProducerConfig.ACKS_CONFIG, "1");
+        KafkaProducer<String, Trigger> producer = new KafkaProducer<>(producerConfig);
+
+        int exitCode = 0;
+        try {
+            LoadDriver driver = new LoadDriver(service.getBean(CamelContext.class), producer, topic, replayLines);
+            driver.hookCompletion();
+
+            List<Step> steps = new ArrayList<>();
+            for (int rate : rates) {
+                Step step = driver.run(rate, stepSeconds, drainSeconds, sloP99Millis);
+                steps.add(step);
+                System.out.println(step.summary());
+                if (!step.sustained) {
+                    break;
+                }
+            }
+            printSummary(steps, sloP99Millis);
+        } catch (Exception e) {
+            e.printStackTrace();
+            exitCode = 1;
+        } finally {
+            producer.close();
+            service.close();
+            kafka.stop();
+            kieServer.stop();
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Record the end-to-end latency of every trigger reaching the end of the process start stage, or of
+     * each of its priority lanes ({@code startProcess-<lane>})
+     */
+    void hookCompletion() throws Exception {
+        ModelCamelContext model = (ModelCamelContext) camelContext;
+        // advising replaces the route definition, so work on a copy of the list
+        for (RouteDefinition route : new ArrayList<>(model.getRouteDefinitions())) {
+            if ("startProcess".equals(route.getId()) || route.getId().startsWith("startProcess-")) {
+                route.adviceWith(model, new AdviceWithRouteBuilder() {
+                    @Override
+                    public void configure() throws Exception {
+                        weaveById(CamelRouter.PROCESS_STAGE_COMPLETED_ID + "*").after().process(LoadDriver.this::completed);
+                    }
+                });
+            }
+        }
+    }
+
+    private void completed(Exchange exchange) {
+        long now = System.nanoTime();
+        Trigger trigger = exchange.getIn().getHeader(CamelRouter.TRIGGER_HEADER, Trigger.class);
+        Step step = current;
+        if (trigger == null || step == null) {
+            return;
+        }
+        Queue<Integer> pending = step.pending.get(keyOf(trigger));
+        Integer index = pending == null ? null : pending.poll();
+        if (index == null) {
+            return;
+        }
+        long intended = step.intended.getAndSet(index, 0);
+        if (intended != 0) {
+            step.latency.recordValue(now - intended);
+            step.completed.incrementAndGet();
+            lastCompletion.set(now);
+        }
+    }
+
+    Step run(int rate, int seconds, int drainSeconds, double sloP99Millis) throws IOException {
+        int count = rate * seconds;
+        Step step = new Step(rate, nextTriggerId, count);
+        nextTriggerId += count;
+        current = step;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            // scheduled send time: the latency clock starts here even if the sender runs late
+            long intended = start + (long) i * 1000000000L / rate;
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(Math.min(intended - now, 100000L));
+            }
+            Trigger trigger = nextTrigger(step.firstTriggerId + i);
+            step.intended.set(i, intended);
+            step.pending.computeIfAbsent(keyOf(trigger), k -> new ConcurrentLinkedQueue<>()).add(i);
+            producer.send(new ProducerRecord<>(topic, trigger.getMemberId(), trigger));
+        }
+        producer.flush();
+        long sendEnd = System.nanoTime();
+
+        long drainDeadline = sendEnd + TimeUnit.SECONDS.toNanos(drainSeconds);
+        while (step.completed.get() < count && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        current = null;
+
+        step.finish(count, start, step.completed.get() > 0 ? lastCompletion.get() : sendEnd, sendEnd, sloP99Millis);
+        return step;
+    }
+
+    private Trigger nextTrigger(int triggerId) throws IOException {
+        Trigger trigger;
+        if (replayLines == null || replayLines.isEmpty()) {
+            trigger = new Trigger();
+            trigger.setTriggerId(triggerId);
+            // unique members, so no decision is served from a cache or dropped as a duplicate
+            trigger.setMemberId("loadgen-" + triggerId);
+        } else {
+            // replayed as recorded: completions are matched on the trigger key, not on a rewritten id
+            trigger = TriggerCodec.decode(replayLines.get((triggerId - 1) % replayLines.size()));
+        }
+        return trigger;
+    }
+
+    private static String keyOf(Trigger trigger) {
+        return trigger.getTriggerId() + ":" + trigger.getMemberId();
+    }
+
+    private static void printSummary(List<Step> steps, double sloP99Millis) {
+        int maxSustained = 0;
+        for (Step step : steps) {
+            if (step.sustained) {
+                maxSustained = Math.max(maxSustained, step.rate);
+            }
+        }
+        System.out.println();
+        System.out.println(String.format("%10s %10s %10s %12s %10s %10s %10s %10s  %s",
+            "target/s", "sent", "completed", "throughput/s", "p50 ms", "p99 ms", "p999 ms", "max ms", "sustained"));
+        for (Step step : steps) {
+            System.out.println(step.row());
+        }
+        System.out.println();
+        System.out.println(maxSustained > 0
+            ? String.format("max sustainable rate: %d triggers/s (p99 <= %.0f ms)", maxSustained, sloP99Millis)
+            : String.format("no rate sustained (p99 <= %.0f ms)", sloP99Millis));
+    }
+
+    static class Step {
+        final int rate;
+        final int firstTriggerId;
+        final AtomicLongArray intended;
+        // indexes of the triggers sent and not completed yet by trigger key, in send order: a replay file
+        // may hold the same trigger more than once
+        final Map<String, Queue<Integer>> pending = new ConcurrentHashMap<>();
+        final AtomicLong completed = new AtomicLong();
+        final Recorder latency = new Recorder(3);
+
+        int sent;
+        double throughput;
+        Histogram histogram;
+        boolean sustained;
+
+        Step(int rate, int firstTriggerId, int count) {
+            this.rate = rate;
+            this.firstTriggerId = firstTriggerId;
+            this.intended = new AtomicLongArray(count);
+        }
+
+        void finish(int sent, long start, long end, long sendEnd, double sloP99Millis) {
+            this.sent = sent;
+            this.histogram = latency.getIntervalHistogram();
+            this.throughput = completed.get() / ((Math.max(end, sendEnd) - start) / 1e9);
+            this.sustained = completed.get() == sent
+                && throughput >= 0.95 * rate
+                && millis(histogram.getValueAtPercentile(99.0)) <= sloP99Millis;
+        }
+
+        String summary() {
+            return String.format("rate %d/s: %d of %d completed, %.0f/s, p50 %.1f ms, p99 %.1f ms, p999 %.1f ms%s",
+                rate, completed.get(), sent, throughput,
+                millis(histogram.getValueAtPercentile(50.0)), millis(histogram.getValueAtPercentile(99.0)),
+                millis(histogram.getValueAtPercentile(99.9)), sustained ? "" : " (not sustained)");
+        }
+
+        String row() {
+            return String.format("%10d %10d %10d %12.0f %10.1f %10.1f %10.1f %10.1f  %s",
+                rate, sent, completed.get(), throughput,
+                millis(histogram.getValueAtPercentile(50.0)), millis(histogram.getValueAtPercentile(99.0)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()), sustained ? "yes" : "no");
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+}
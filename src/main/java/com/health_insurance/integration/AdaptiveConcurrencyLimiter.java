@@ -0,0 +1,192 @@
+package com.health_insurance.integration;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+
+import org.apache.camel.Exchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * AIMD concurrency limit for one pipeline stage.
+ * 
+ * Every call holds one permit while it runs. The limit grows by one when the stage is saturated (all permits
+ * in use) and work is waiting (on a permit, or in the backlog reported by {@code queueDepth}), and is cut by {@code backoffRatio} when a call fails or its latency
+ * goes above {@code latencyTolerance} times the observed minimum latency (at most once per minimum latency).
+ * The limit always stays within [min, max].
+ *
+ * Calls may come from several lanes (the priority lanes of a stage). While calls wait for a permit, a free
+ * permit goes to the waiting lanes in turn, in proportion to their weight (smooth weighted round robin),
+ * so a busy high lane gets most of the permits without starving the others.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final IntSupplier queueDepth;
+    private final Map<String, Integer> weights;
+
+    private int limit;
+    private int inFlight;
+    private int waiting;
+    private long minLatencyNanos;
+    private long lastDecreaseNanos;
+    // waiting calls and round robin credit of each lane, and the lane the next free permit goes to
+    private final Map<String, Integer> waitingByLane = new HashMap<>();
+    private final Map<String, Integer> credits = new HashMap<>();
+    private String nextLane;
+
+    public AdaptiveConcurrencyLimiter(String name, int minLimit, int maxLimit, double latencyTolerance, double backoffRatio, IntSupplier queueDepth) {
+        this(name, minLimit, maxLimit, latencyTolerance, backoffRatio, queueDepth, Collections.emptyMap());
+    }
+
+    /**
+     * @param weights weight of each lane, lanes not listed weigh 1
+     */
+    public AdaptiveConcurrencyLimiter(String name, int minLimit, int maxLimit, double latencyTolerance, double backoffRatio, IntSupplier queueDepth,
+            Map<String, Integer> weights) {
+        this.name = name;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.queueDepth = queueDepth;
+        this.weights = new HashMap<>(weights);
+        this.limit = this.minLimit;
+        this.lastDecreaseNanos = System.nanoTime();
+    }
+
+    /**
+     * Wrap an async call so it runs under this limit
+     */
+    public Function<Exchange, CompletableFuture<?>> limit(Function<Exchange, CompletableFuture<?>> call) {
+        return limit("", call);
+    }
+
+    /**
+     * Wrap an async call of the given lane so it runs under this limit
+     */
+    public Function<Exchange, CompletableFuture<?>> limit(String lane, Function<Exchange, CompletableFuture<?>> call) {
+        return exchange -> {
+            acquire(lane);
+            long start = System.nanoTime();
+            CompletableFuture<?> result;
+            try {
+                result = call.apply(exchange);
+            } catch (RuntimeException e) {
+                release(System.nanoTime() - start, true);
+                throw e;
+            }
+            result.whenComplete((r, t) -> release(System.nanoTime() - start, t != null));
+            return result;
+        };
+    }
+
+    synchronized void acquire() {
+        acquire("");
+    }
+
+    synchronized void acquire(String lane) {
+        boolean interrupted = false;
+        waiting++;
+        waitingByLane.merge(lane, 1, Integer::sum);
+        while (inFlight >= limit || !lane.equals(nextLane())) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        waiting--;
+        waitingByLane.merge(lane, -1, Integer::sum);
+        inFlight++;
+        // the turn is used, the remaining waiters pick the next one
+        nextLane = null;
+        notifyAll();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lane the next free permit goes to: every waiting lane earns its weight, the richest one gets the
+     * permit and pays the weights of all the waiting lanes
+     */
+    private String nextLane() {
+        if (nextLane == null) {
+            int totalWeight = 0;
+            for (Map.Entry<String, Integer> lane : waitingByLane.entrySet()) {
+                if (lane.getValue() > 0) {
+                    int weight = weights.getOrDefault(lane.getKey(), 1);
+                    totalWeight += weight;
+                    int credit = credits.merge(lane.getKey(), weight, Integer::sum);
+                    if (nextLane == null || credit > credits.get(nextLane)) {
+                        nextLane = lane.getKey();
+                    }
+                }
+            }
+            if (nextLane != null) {
+                credits.merge(nextLane, -totalWeight, Integer::sum);
+            }
+        }
+        return nextLane;
+    }
+
+    synchronized void release(long latencyNanos, boolean failed) {
+        boolean saturated = inFlight >= limit;
+        inFlight--;
+
+        if (minLatencyNanos == 0 || latencyNanos < minLatencyNanos) {
+            minLatencyNanos = latencyNanos;
+        } else {
+            // drift up slowly so a permanently slower backend becomes the new baseline
+            minLatencyNanos += (latencyNanos - minLatencyNanos) >> 8;
+        }
+
+        long now = System.nanoTime();
+        if (failed || latencyNanos > minLatencyNanos * latencyTolerance) {
+            if (limit > minLimit && now - lastDecreaseNanos > minLatencyNanos) {
+                limit = Math.max(minLimit, (int) (limit * backoffRatio));
+                lastDecreaseNanos = now;
+                LOG.debug("{} limit decreased to {} (latency {}us, failed {})", name, limit, latencyNanos / 1000, failed);
+            }
+        } else if (saturated && limit < maxLimit && (waiting > 0 || queueDepth.getAsInt() > 0)) {
+            limit++;
+            LOG.debug("{} limit increased to {}", name, limit);
+        }
+        notifyAll();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized long getMinLatencyMicros() {
+        return minLatencyNanos / 1000;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.getAsInt();
+    }
+}
@@ -0,0 +1,92 @@
+package com.health_insurance.integration;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.health_insurance.phm_model.Trigger;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams an {@code application/x-ndjson} body, one {@link Trigger} per line, into Kafka.
+ * Lines are parsed with the shared {@link TriggerCodec} and published as they are read, so the payload
+ * is never held in memory.
+ * The body is replaced by a report with the accepted and rejected counts and the rejected line numbers.
+ */
+public class BulkTriggerIngestProcessor implements Processor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkTriggerIngestProcessor.class);
+
+    private final TriggerPublisher publisher;
+    private final int maxReportedErrors;
+
+    public BulkTriggerIngestProcessor(TriggerPublisher publisher, int maxReportedErrors) {
+        this.publisher = publisher;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    @Override
+    public void process(Exchange e) throws Exception {
+        AtomicLong sent = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        long rejected = 0;
+        List<Map<String, Object>> errors = Collections.synchronizedList(new ArrayList<>());
+
+        InputStream body = e.getIn().getMandatoryBody(InputStream.class);
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            long lineNumber = 0;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                final long current = lineNumber;
+                try {
+                    publisher.send(TriggerCodec.decode(line), (metadata, error) -> {
+                        if (error == null) {
+                            sent.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                            addError(errors, current, error);
+                        }
+                    });
+                } catch (Exception ex) {
+                    rejected++;
+                    addError(errors, current, ex);
+                }
+            }
+        }
+        // wait for the broker acknowledgements of everything enqueued above
+        publisher.flush();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("accepted", sent.get());
+        report.put("rejected", rejected + failed.get());
+        errors.sort((a, b) -> Long.compare((Long) a.get("line"), (Long) b.get("line")));
+        report.put("errors", errors);
+        LOG.info("bulk ingest: {} accepted, {} rejected", sent.get(), rejected + failed.get());
+
+        e.getIn().setBody(report);
+    }
+
+    private void addError(List<Map<String, Object>> errors, long line, Throwable error) {
+        if (errors.size() < maxReportedErrors) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("line", line);
+            entry.put("error", error.getMessage());
+            errors.add(entry);
+        }
+    }
+}
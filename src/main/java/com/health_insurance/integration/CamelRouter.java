@@ -1,20 +1,45 @@
 package com.health_insurance.integration;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.stream.Collectors;
 
-import com.health_insurance.phm_model.Response;
+import com.health_insurance.kie.BusinessAutomationClient;
+import com.health_insurance.kie.KieCallGuard;
+import com.health_insurance.kie.KieCallGuard.Operation;
+import com.health_insurance.kie.ProcessStartResult;
 import com.health_insurance.phm_model.Trigger;
 
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.LoggingLevel;
+import org.apache.camel.ProducerTemplate;
 import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.processor.idempotent.kafka.KafkaIdempotentRepository;
+import org.apache.camel.component.seda.SedaEndpoint;
+import org.apache.camel.model.ProcessorDefinition;
+import org.apache.camel.model.RouteDefinition;
 import org.apache.camel.model.dataformat.JsonLibrary;
 import org.apache.camel.model.rest.RestBindingMode;
+import org.apache.camel.model.rest.RestConfigurationDefinition;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
 
@@ -43,18 +68,161 @@ public class CamelRouter extends RouteBuilder {
 	String kafkaHost;
     @Value("${kafka.port:9092}") 
     String kafkaPort;
+    @Value("${kafka.consumers:1}")
+    int kafkaConsumers;
 
     @Value("${camel.seda.consumers}")
     String sedaConsumers;
+    @Value("${camel.seda.decision.consumers:${camel.seda.consumers}}")
+    int decisionConsumers;
+    @Value("${camel.seda.process.consumers:${camel.seda.consumers}}")
+    int processConsumers;
+    // adaptive concurrency of the kie-server calls of each stage
+    @Value("${camel.stage.decision.limit.min:1}")
+    int decisionLimitMin;
+    @Value("${camel.stage.decision.limit.max:20}")
+    int decisionLimitMax;
+    @Value("${camel.stage.process.limit.min:1}")
+    int processLimitMin;
+    @Value("${camel.stage.process.limit.max:28}")
+    int processLimitMax;
+    @Value("${camel.stage.limit.latency-tolerance:2.0}")
+    double limitLatencyTolerance;
+    @Value("${camel.stage.limit.backoff:0.9}")
+    double limitBackoff;
+    @Value("${camel.seda.queue.size:1000}")
+    int sedaQueueSize;
+    @Value("${camel.lanes.count:0}")
+    int laneCount;
+    @Value("${camel.decision.batch.size:50}")
+    int decisionBatchSize;
+    @Value("${camel.decision.batch.interval:100}")
+    long decisionBatchInterval;
+    @Value("${camel.process.batch.size:50}")
+    int processBatchSize;
+    @Value("${camel.process.batch.interval:100}")
+    long processBatchInterval;
     
-    private static final String KAFKA_SERIALIZER_CLASS_CONFIG = "org.apache.kafka.common.serialization.ByteArraySerializer";
-    private static final String KAFKA_DESERIALIZER_CLASS_CONFIG = "org.apache.kafka.common.serialization.ByteArrayDeserializer";
+    // Response properties shipped to the process, empty ships the whole Response facts
+    @Value("${kie.process.variables.fields:}")
+    String processVariableFields;
+
+    @Value("${kie.decision.cache.enabled:false}")
+    boolean decisionCacheEnabled;
+    @Value("${kie.decision.cache.release-check-interval:30000}")
+    long releaseCheckInterval;
+
+    @Autowired
+    BusinessAutomationClient kieClient;
+    @Autowired
+    OffsetTracker offsetTracker;
+    @Autowired
+    TriggerDedupRepository dedupRepository;
+    @Autowired
+    TriggerPublisher triggerPublisher;
+    @Autowired
+    KieCallGuard kieCallGuard;
+    @Autowired
+    TriggerSpillover spillover;
+    @Autowired
+    PipelineMetrics pipelineMetrics;
+
+    // how often (ms) the consumers held back by a background kie client initialization check for it
+    @Value("${kie.client.init.check-interval:1000}")
+    long kieReadinessCheckInterval;
+    // at-least-once: a trigger failing this many times goes to the dead letter topic instead of being redelivered
+    @Value("${kafka.offsets.retry.max-attempts:5}")
+    int retryMaxAttempts;
+    @Value("${kafka.offsets.dead-letter-topic:phm-trigger-dead-letter}")
+    String deadLetterTopic;
+    // consumer group of the at-least-once subscriber (the Camel consumer keeps its own default otherwise)
+    @Value("${kafka.offsets.group-id:phm-triggers}")
+    String subscriberGroupId;
+    // how often (ms) spilled triggers are replayed once the kie-server breakers are closed
+    @Value("${kie.spillover.replay-interval:5000}")
+    long spilloverReplayInterval;
+
+    // OpenAPI document of the REST routes, needs camel-swagger-java (left out of the lean build)
+    @Value("${camel.rest.api-doc.enabled:true}")
+    boolean apiDocEnabled;
+
+    @Value("${camel.rest.bulk.max-reported-errors:100}")
+    int bulkMaxReportedErrors;
+    // async: /trigger answers 202 as soon as the record is enqueued in the producer
+    @Value("${kafka.producer.async:false}")
+    boolean asyncPublish;
+    @Value("${kafka.producer.retry.attempts:5}")
+    int publishRetryAttempts;
+    @Value("${kafka.producer.retry.delay:500}")
+    long publishRetryDelay;
+
+    @Value("${kafka.dedup.enabled:false}")
+    boolean dedupEnabled;
+    // also how long the process start of a decision outcome is remembered in cluster mode
+    @Value("${kafka.dedup.window:600000}")
+    long dedupWindow;
+
+    // priority lanes of the batched pipeline, highest first (rules and weights: camel.priority.lane.<name>.*)
+    @Value("${camel.priority.lanes:}")
+    String priorityLanes;
+    @Autowired
+    Environment environment;
+    // consume the per member coalesced triggers of the MemberTriggerCoalescer instead of the raw topic
+    @Value("${kafka.coalesce.enabled:false}")
+    boolean coalesceEnabled;
+    @Value("${kafka.coalesce.topic:phm-trigger-coalesced}")
+    String coalescedTopic;
+
+    // cluster mode: decision and process start run in separate pods, handing over through a Kafka topic
+    @Value("${camel.cluster.enabled:false}")
+    boolean clusterEnabled;
+    // stages run by this pod in cluster mode: decision, process or both
+    @Value("${camel.cluster.stages:decision,process}")
+    String clusterStages;
+    @Value("${kafka.cluster.process.topic:phm-process-start}")
+    String processTopic;
+    @Value("${kafka.cluster.decision.group-id:phm-decisions}")
+    String decisionGroupId;
+    @Value("${kafka.cluster.process.group-id:phm-process-start}")
+    String processGroupId;
+    // triggers whose process start was dispatched, shared by all the process stage pods
+    @Value("${kafka.cluster.idempotency.topic:phm-process-start-ids}")
+    String idempotencyTopic;
+    @Value("${kafka.cluster.idempotency.max-entries:100000}")
+    int idempotencyMaxEntries;
+
+    private final Map<String, AdaptiveConcurrencyLimiter> stageLimiters = new LinkedHashMap<>();
+    // claims on the process starts of the decision outcomes, shared by the process stage pods
+    private ProcessStartClaims startClaims;
+    // threads running the completed batches of each stage queue, they wait on the stage limit
+    private final Map<String, ExecutorService> batchPools = new LinkedHashMap<>();
+    private ProducerTemplate deadLetterTemplate;
+
+    private static final String LANE_HEADER = "phmLane";
+    static final String TRIGGER_HEADER = "phmTrigger";
+    private static final String DEDUP_KEY_HEADER = "phmDedupKey";
+    private static final String REPLAYED_HEADER = "phmReplayed";
+    private static final String START_KEY_HEADER = "phmStartKey";
+    // last step of a trigger in the batched pipeline, for the load driver to hook in
+    static final String PROCESS_STAGE_COMPLETED_ID = "processStageCompleted";
+    private static final String KAFKA_SERIALIZER_CLASS_CONFIG = TriggerSerializer.class.getName();
+    private static final String KAFKA_DESERIALIZER_CLASS_CONFIG = TriggerDeserializer.class.getName();
+    private static final String KAFKA_LIST_DESERIALIZER_CLASS_CONFIG = TriggerListDeserializer.class.getName();
     
     @Override
     public void configure() throws Exception {
 
+        // time every exchange of every route below
+        getContext().addRoutePolicyFactory(pipelineMetrics.routePolicyFactory());
+
         // @formatter:off
-        restConfiguration()
+        RestConfigurationDefinition restConfig = restConfiguration()
+            .component("servlet")
+            // hand the request stream to the routes as is, so bulk uploads are never buffered
+            .endpointProperty("disableStreamCache", "true")
+            .bindingMode(RestBindingMode.json);
+        if (apiDocEnabled) {
+            restConfig
                 .apiContextPath("/api-doc")
                 .apiProperty("api.title", "Integration Service REST API")
                 .apiProperty("api.version", "1.0")
@@ -62,16 +230,23 @@ public class CamelRouter extends RouteBuilder {
                 .apiProperty("base.path", "camel/")
                 .apiProperty("api.path", "/")
                 .apiProperty("host", "")
-                .apiContextRouteId("doc-api")
-            .component("servlet")
-            .bindingMode(RestBindingMode.json);
+                .apiContextRouteId("doc-api");
+        }
         
         rest("/trigger").description("Create a new Trigger and send it to Kafka Topic")
             .consumes("application/json")
             .produces("application/json")
             .post().type(Trigger.class)
                 .route().routeId("trigger-api")
-                .to("direct:publishToKafka");
+                .to(asyncPublish ? "direct:publishToKafkaAsync" : "direct:publishToKafka")
+            .endRest()
+            .post("/bulk").description("Stream newline delimited Triggers (one JSON per line) to Kafka Topic")
+                .consumes("application/x-ndjson")
+                .bindingMode(RestBindingMode.off)
+                .route().routeId("trigger-bulk-api")
+                .process(new BulkTriggerIngestProcessor(triggerPublisher, bulkMaxReportedErrors))
+                .marshal().json(JsonLibrary.Jackson)
+                .setHeader(Exchange.CONTENT_TYPE, constant("application/json"));
 
     // Direct routes
         from("direct:runKieCommand")
@@ -79,57 +254,602 @@ public class CamelRouter extends RouteBuilder {
             .log("calling kie-server")
             .to("bean:businessAutomationServiceClient?method=listContainers")
             .log("${body}");
+
+        if (decisionCacheEnabled) {
+            // listContainers reports new releases to the decision cache
+            fromF("timer:kieReleaseCheck?period=%s", releaseCheckInterval)
+                .routeId("kieReleaseCheck")
+                .to("direct:runKieCommand");
+        }
         
         from("direct:publishToKafka")
             .routeId("kafkaPublisher")
-            .marshal().json(JsonLibrary.Jackson, Trigger.class)
+            // Key of the message: all triggers of a member land on the same partition
+            .setHeader(KafkaConstants.KEY, simple("${body.memberId}"))
             .log("publishing [ ${body} ] to kafka topic}")
-            .setHeader(KafkaConstants.KEY, constant("phm-trigger")) // Key of the message
-            .toF("kafka:%s?brokers=%s:%s&serializerClass=%s", kafkaTopic, kafkaHost, kafkaPort, KAFKA_SERIALIZER_CLASS_CONFIG);
+            .toF("kafka:%s?brokers=%s:%s&serializerClass=%s&%s", kafkaTopic, kafkaHost, kafkaPort, KAFKA_SERIALIZER_CLASS_CONFIG, triggerPublisher.camelProducerOptions());
+
+        ProducerTemplate retryTemplate = getContext().createProducerTemplate();
+        from("direct:publishToKafkaAsync")
+            .routeId("kafkaAsyncPublisher")
+            .process(e -> {
+                Trigger trigger = e.getIn().getBody(Trigger.class);
+                triggerPublisher.send(trigger, (metadata, error) -> {
+                    if (error != null) {
+                        LOG.warn("delivery of trigger " + trigger.getTriggerId() + " failed, retrying: " + error.getMessage());
+                        retryTemplate.asyncSendBody("direct:publishRetry", trigger);
+                    }
+                });
+            })
+            .setHeader(Exchange.HTTP_RESPONSE_CODE, constant(202));
+
+        from("direct:publishRetry")
+            .routeId("kafkaPublishRetry")
+            .errorHandler(deadLetterChannel("log:kafkaPublishDeadLetter?level=ERROR&showBody=true")
+                .maximumRedeliveries(publishRetryAttempts)
+                .redeliveryDelay(publishRetryDelay)
+                .useExponentialBackOff())
+            .setHeader(KafkaConstants.KEY, simple("${body.memberId}"))
+            .toF("kafka:%s?brokers=%s:%s&serializerClass=%s&%s", kafkaTopic, kafkaHost, kafkaPort, KAFKA_SERIALIZER_CLASS_CONFIG, triggerPublisher.camelProducerOptions());
             
-        fromF("kafka:%s?brokers=%s:%s&valueDeserializer=%s", kafkaTopic, kafkaHost, kafkaPort, KAFKA_DESERIALIZER_CLASS_CONFIG)
-            .routeId("kafkaSubscriber")
-            .unmarshal().json(JsonLibrary.Jackson, Trigger.class)
+        List<String> stages = Arrays.stream(clusterStages.split(",")).map(String::trim).collect(Collectors.toList());
+        boolean runDecision = !clusterEnabled || stages.contains("decision");
+        boolean runProcess = !clusterEnabled || stages.contains("process");
+        PriorityClassifier priorityClassifier = priorityClassifier();
+        if (priorityClassifier != null && laneCount > 0) {
+            throw new IllegalArgumentException("camel.priority.lanes and camel.lanes.count can not be used together: ordered lanes bypass the batched stages");
+        }
+
+        // kie client still connecting in the background: the Kafka consumers start once it is ready
+        boolean kieReady = kieClient.isReady();
+        List<String> gatedRoutes = new ArrayList<>();
+        if (clusterEnabled) {
+            LOG.info("cluster mode: running the {} stage(s)", clusterStages);
+            if (laneCount > 0) {
+                throw new IllegalArgumentException("camel.lanes.count must be 0 when camel.cluster.enabled=true: ordered lanes run both stages in one pod");
+            }
+        }
+
+        if (offsetTracker.isEnabled()) {
+            deadLetterTemplate = getContext().createProducerTemplate();
+        }
+
+        // one consumer per partition, up to kafka.consumers; in cluster mode the decision pods share the partitions
+        ProcessorDefinition<?> kafkaSubscriber = subscriberRoute("kafkaSubscriber", coalesceEnabled ? coalescedTopic : kafkaTopic,
+                clusterEnabled ? decisionGroupId : null, coalesceEnabled ? KAFKA_LIST_DESERIALIZER_CLASS_CONFIG : KAFKA_DESERIALIZER_CLASS_CONFIG)
+            .autoStartup(runDecision && kieReady);
+        if (runDecision && !kieReady) {
+            gatedRoutes.add("kafkaSubscriber");
+        }
+
+        // unreadable records carry no trigger: their offset is done as soon as it is seen
+        kafkaSubscriber = kafkaSubscriber
+            .choice()
+                .when(body().isNull())
+                    .process(offsetTracker::skipped)
+                    .stop()
+            .end()
+            // kept from here on, so a failing trigger can be dead lettered from any step
+            .setHeader(TRIGGER_HEADER, body());
+
+        if (dedupEnabled) {
+            // drop producer retries and replays of a (triggerId, memberId) seen within the dedup window,
+            // coalesced sets are keyed by member and known by their first trigger
+            // the key travels with the trigger and is only kept once the trigger went through
+            kafkaSubscriber = kafkaSubscriber
+                .setHeader(DEDUP_KEY_HEADER, simple(coalesceEnabled ? "${body[0].triggerId}:${header[kafka.KEY]}" : "${body.triggerId}:${body.memberId}"))
+                .idempotentConsumer(header(DEDUP_KEY_HEADER), dedupRepository);
+        }
+
+        kafkaSubscriber
+            .process(pipelineMetrics.consumed())
             .log("Message received from Kafka : ${body}")
             .log("    on the topic ${headers[kafka.TOPIC]}")
             .log("    on the partition ${headers[kafka.PARTITION]}")
             .log("    with the offset ${headers[kafka.OFFSET]}")
             .log("    with the key ${headers[kafka.KEY]}")  
             .log("\n Call the decision server")
-            .to("seda:makeDecision");
+            .process(offsetTracker::dispatched);
 
-        fromF("seda:makeDecision?concurrentConsumers=%s", sedaConsumers)
-            .routeId("makeDecision")
-            .process(e -> {
-                LOG.debug("Decision request Body: " + e.getIn().getBody());
-                Trigger trigger = e.getIn().getBody(Trigger.class);
+        if (laneCount > 0) {
+            // keep the order of each member's triggers: same member, same lane
+            kafkaSubscriber
+                .process(e -> e.getIn().setHeader(LANE_HEADER, MemberLanes.laneOf(memberIdOf(e.getIn().getBody()), laneCount)))
+                .process(pipelineMetrics.enqueued())
+                .toD("seda:lane-${header." + LANE_HEADER + "}?size=" + sedaQueueSize + "&blockWhenFull=true");
+        } else if (priorityClassifier != null) {
+            kafkaSubscriber
+                .to("direct:prioritize");
+        } else {
+            // bounded queues: a full stage blocks the upstream consumer instead of growing the heap
+            kafkaSubscriber
+                .process(pipelineMetrics.enqueued())
+                .toF("seda:makeDecision?size=%s&blockWhenFull=true", sedaQueueSize);
+        }
 
-                Map<String, Object> decisionFacts = new HashMap<>();
-                decisionFacts.put(Integer.toString(trigger.getTriggerId()), trigger);
-                e.getIn().setBody(decisionFacts);
-            }) // call decision service
-            .toF("bean:businessAutomationServiceClient?method=executeCommands(%s, %s, ${body})", decisionContainerId, decisionSessionName)
-            .log("Decision Results: [ ${body} ]")
-            .to("seda:startProcess");
+        if (priorityClassifier != null) {
+            // one bounded queue per priority lane, a full lane only blocks the triggers behind it
+            from("direct:prioritize")
+                .routeId("prioritize")
+                .process(priorityClassifier)
+                .process(pipelineMetrics.enqueued())
+                .toD("seda:makeDecision-${header." + PriorityClassifier.PRIORITY_HEADER + "}?size=" + sedaQueueSize + "&blockWhenFull=true");
+        }
 
-        fromF("seda:startProcess?concurrentConsumers=%s", sedaConsumers)
-            .routeId("startProcess")
-            .process(e -> {
-                LOG.debug("Process request Body: " + e.getIn().getBody());
+        ProcessVariablesProcessor processVariables = new ProcessVariablesProcessor(Arrays.stream(processVariableFields.split(","))
+            .map(String::trim).filter(f -> !f.isEmpty()).collect(Collectors.toList()));
+
+        // ordered lanes: one consumer each, decision and process start run back to back per trigger
+        for (int lane = 0; lane < laneCount; lane++) {
+            fromF("seda:lane-%s?size=%s", lane, sedaQueueSize)
+                .routeId("lane-" + lane)
+                .onException(Exception.class).handled(true)
+                    .process(this::failExchange)
+                .end()
+                .setHeader(TRIGGER_HEADER, body())
+                .doTry()
+                    .process(new DecisionFactsProcessor())
+                    .toF("bean:businessAutomationServiceClient?method=executeCommands(%s, %s, ${body})", decisionContainerId, decisionSessionName)
+                    .log(LoggingLevel.DEBUG, "Decision Results: [ ${body} ]")
+                    .process(pipelineMetrics.completedStage("decision"))
+                    .process(processVariables)
+                    .toF("bean:businessAutomationServiceClient?method=startProcess(%s, %s, ${body})", processContainerId, processDefinitionId)
+                    .log("a process instance has been created with Id ${body}")
+                    .process(pipelineMetrics.completedStage("process"))
+                    .process(e -> completed(e.getIn().getHeaders(), true))
+                .doCatch(CallNotPermittedException.class, BulkheadFullException.class).onWhen(e -> spillover.isEnabled())
+                    // kie-server unavailable: keep the trigger aside until the breakers close
+                    .process(e -> spill(e.getIn().getHeader(TRIGGER_HEADER)))
+                    .process(e -> completed(e.getIn().getHeaders(), false))
+                .doCatch(Exception.class)
+                    .process(e -> failed(e.getIn().getHeaders(), e.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class)))
+                .end();
+            pipelineMetrics.bindStage("lane-" + lane, getContext().getEndpoint(String.format("seda:lane-%s?size=%s", lane, sedaQueueSize), SedaEndpoint.class), null);
+        }
+
+        // priority lanes share the kie-server concurrency limit of their stage
+        List<String> decisionQueues = stageQueues("makeDecision", priorityClassifier);
+        List<String> processQueues = stageQueues("startProcess", clusterEnabled ? null : priorityClassifier);
+        AdaptiveConcurrencyLimiter decisionLimiter = stageLimiter("makeDecision", decisionLimitMin, decisionLimitMax, decisionQueues, priorityClassifier);
+        AdaptiveConcurrencyLimiter processLimiter = stageLimiter("startProcess", processLimitMin, processLimitMax, processQueues, clusterEnabled ? null : priorityClassifier);
+
+        // in cluster mode decisions go to the process stage pods, otherwise to the process queue of their lane
+        String processUri = clusterEnabled ? "direct:handOverDecision"
+            : priorityClassifier != null ? "seda:startProcess-${header." + PriorityClassifier.PRIORITY_HEADER + "}?size=" + sedaQueueSize + "&blockWhenFull=true"
+            : String.format("seda:startProcess?size=%s&blockWhenFull=true", sedaQueueSize);
+
+        if (priorityClassifier == null) {
+            decisionStage("makeDecision", decisionConsumers, "none", decisionLimiter, processUri, runDecision);
+        } else {
+            for (PriorityClassifier.Lane lane : priorityClassifier.getLanes()) {
+                decisionStage("makeDecision-" + lane.getName(), priorityClassifier.consumersOf(lane, decisionConsumers), lane.getName(), decisionLimiter, processUri, runDecision);
+            }
+        }
+
+        if (clusterEnabled) {
+            from("direct:handOverDecision")
+                .routeId("decisionHandOver")
+                .process(e -> e.getIn().setBody(DecisionOutcome.of(e.getIn().getHeader(TRIGGER_HEADER), e.getIn().getBody(Map.class))))
+                .setHeader(KafkaConstants.KEY, simple("${body.memberId}"))
+                // bridgeEndpoint: the kafka.TOPIC header of the consumed trigger must not redirect the send
+                .toF("kafka:%s?brokers=%s:%s&serializerClass=%s&bridgeEndpoint=true&%s", processTopic, kafkaHost, kafkaPort, DecisionOutcomeSerializer.class.getName(), triggerPublisher.camelProducerOptions())
+                // the decision stage is done with the trigger once its outcome is in the topic
+                .process(e -> completed(e.getIn().getHeaders(), true));
+
+            KafkaIdempotentRepository startedTriggers = new KafkaIdempotentRepository(idempotencyTopic, kafkaHost + ":" + kafkaPort, idempotencyMaxEntries, 100);
+            startedTriggers.setCamelContext(getContext());
+            // started and stopped with the context, no idempotent consumer owns it
+            getContext().addService(startedTriggers);
+            startClaims = new ProcessStartClaims(startedTriggers, dedupWindow);
 
-                Map<String, Object> resultFactObjects = e.getIn().getBody(Map.class);
-                List<?> factsList = (List<?>)resultFactObjects.get("resultFactObjects");
-                List<?> responsesList = factsList.stream().filter(o -> o instanceof Response).collect(Collectors.toList());
+            subscriberRoute("processStageSubscriber", processTopic, processGroupId, DecisionOutcomeDeserializer.class.getName())
+                .autoStartup(runProcess && kieReady)
+                .choice()
+                    .when(body().isNull())
+                        .process(offsetTracker::skipped)
+                        .stop()
+                .end()
+                .setHeader(TRIGGER_HEADER, simple("${body.triggers}"))
+                // redeliveries of an outcome whose process is starting or started are dropped, whichever pod picks
+                // them up; the claim is released when the start fails (see completed and failed), so it can be redelivered
+                .process(e -> e.getIn().setHeader(START_KEY_HEADER, startClaims.claim(e.getIn().getBody(DecisionOutcome.class).getKey())))
+                .choice()
+                    .when(header(START_KEY_HEADER).isNull())
+                        .log(LoggingLevel.DEBUG, "process of ${body.key} already started")
+                        .process(offsetTracker::skipped)
+                        .stop()
+                .end()
+                .process(pipelineMetrics.consumed())
+                .process(offsetTracker::dispatched)
+                .process(e -> {
+                    e.getIn().setBody(e.getIn().getBody(DecisionOutcome.class).toDecisionResult());
+                })
+                .process(pipelineMetrics.enqueued())
+                .toF("seda:startProcess?size=%s&blockWhenFull=true", sedaQueueSize);
+            if (runProcess && !kieReady) {
+                gatedRoutes.add("processStageSubscriber");
+            }
+        }
 
-                Map<String, Object> processVariables = new HashMap<>();
-                processVariables.put("pDataList", responsesList);
+        if (priorityClassifier == null || clusterEnabled) {
+            processStage("startProcess", processConsumers, "none", processVariables, processLimiter, runProcess);
+        } else {
+            for (PriorityClassifier.Lane lane : priorityClassifier.getLanes()) {
+                processStage("startProcess-" + lane.getName(), priorityClassifier.consumersOf(lane, processConsumers), lane.getName(), processVariables, processLimiter, runProcess);
+            }
+        }
 
-                e.getIn().setBody(processVariables);
-            }) // start a new Process instance
-            .toF("bean:businessAutomationServiceClient?method=startProcess(%s, %s, ${body})", processContainerId, processDefinitionId)
-            .log("a process instance has been created with Id ${body}");
+        if (!gatedRoutes.isEmpty()) {
+            fromF("timer:kieReadiness?period=%s", kieReadinessCheckInterval)
+                .routeId("kieReadiness")
+                .filter(e -> kieClient.isReady())
+                    .process(e -> {
+                        for (String routeId : gatedRoutes) {
+                            LOG.info("kie client ready, starting {}", routeId);
+                            getContext().startRoute(routeId);
+                        }
+                    })
+                    .to("controlbus:route?routeId=kieReadiness&action=stop&async=true");
+        }
+
+        if (spillover.isEnabled()) {
+            ProducerTemplate replayTemplate = getContext().createProducerTemplate();
+            fromF("timer:spilloverReplay?period=%s", spilloverReplayInterval)
+                .routeId("spilloverReplay")
+                .process(e -> {
+                    if (kieCallGuard.isClosed(Operation.DECISION) && kieCallGuard.isClosed(Operation.PROCESS)) {
+                        // back to the head of the pipeline, the same way the Kafka subscriber dispatches;
+                        // the spill file is dropped once every replayed trigger went through completed(...)
+                        spillover.replay(trigger -> {
+                            if (clusterEnabled) {
+                                // the decision pods take it from the trigger topic: done with once the publish is acknowledged
+                                replayTemplate.sendBody("direct:publishToKafka", trigger);
+                                spillover.replayCompleted();
+                            } else {
+                                replayTemplate.sendBodyAndHeader(dispatchUriOf(trigger), trigger, REPLAYED_HEADER, true);
+                            }
+                        });
+                    }
+                });
+        }
         
         // @formatter:on
     }
 
+    /**
+     * Batched decision stage draining one queue: group the fact sets, one kie-server call per group,
+     * then hand every result over to the process stage
+     */
+    private void decisionStage(String queue, int consumers, String priority, AdaptiveConcurrencyLimiter limiter, String processUri, boolean autoStartup) {
+        fromF("seda:%s?size=%s&concurrentConsumers=%s", queue, sedaQueueSize, consumers)
+            .routeId(queue)
+            .autoStartup(autoStartup)
+            // anything failing outside the kie-server call: the trigger (or each one of the batch) is redelivered
+            .onException(Exception.class).handled(true)
+                .process(this::failExchange)
+            .end()
+            // kept with the item headers, so the trigger can be spilled from any later step
+            .setHeader(TRIGGER_HEADER, body())
+            .process(new DecisionFactsProcessor())
+            // group up to N fact sets or T ms, whichever comes first
+            .aggregate(constant(true), new ItemHeadersAggregationStrategy())
+                .completionSize(decisionBatchSize)
+                .completionInterval(decisionBatchInterval)
+                .parallelProcessing()
+                .executorService(batchPools.get(queue))
+                // call decision service once for the whole group
+                .doTry()
+                    .process(new CompletableFutureProcessor(limiter.limit(priority, e -> 
+                        kieClient.executeBatchAsync(decisionContainerId, decisionSessionName, e.getIn().getBody(List.class)))))
+                .doCatch(CallNotPermittedException.class, BulkheadFullException.class).onWhen(e -> spillover.isEnabled())
+                    // kie-server unavailable: keep the whole batch aside until the breakers close
+                    .process(this::spillBatch)
+                    .stop()
+                .doCatch(Exception.class)
+                    .process(this::failBatch)
+                    .stop()
+                .end()
+                .log(LoggingLevel.DEBUG, "Decision Results: [ ${body} ]")
+                // fan the results back out, one per originating trigger
+                .split(body())
+                    .process(ItemHeadersAggregationStrategy.restoreItemHeaders())
+                    .choice()
+                        .when(e -> BusinessAutomationClient.decisionErrorOf(e.getIn().getBody(Map.class)) != null)
+                            // the rules did not run: no process is started, the trigger is redelivered
+                            .process(e -> failed(e.getIn().getHeaders(), new IllegalStateException("decision failed: "
+                                + BusinessAutomationClient.decisionErrorOf(e.getIn().getBody(Map.class)))))
+                        .otherwise()
+                            .process(pipelineMetrics.completedStage("decision", priority))
+                            .process(pipelineMetrics.enqueued())
+                            .toD(processUri)
+                    .end();
+    }
+
+    /**
+     * Batched process stage draining one queue: group the process starts, start them in parallel,
+     * then complete (or spill) every trigger
+     */
+    private void processStage(String queue, int consumers, String priority, ProcessVariablesProcessor processVariables, AdaptiveConcurrencyLimiter limiter, boolean autoStartup) {
+        fromF("seda:%s?size=%s&concurrentConsumers=%s", queue, sedaQueueSize, consumers)
+            .routeId(queue)
+            .autoStartup(autoStartup)
+            .onException(Exception.class).handled(true)
+                .process(this::failExchange)
+            .end()
+            .process(processVariables)
+            // accumulate process starts for the same container and definition
+            .aggregate(constant(true), new ItemHeadersAggregationStrategy())
+                .completionSize(processBatchSize)
+                .completionInterval(processBatchInterval)
+                .parallelProcessing()
+                .executorService(batchPools.get(queue))
+                // start the new Process instances
+                .doTry()
+                    .process(new CompletableFutureProcessor(limiter.limit(priority, e -> 
+                        kieClient.startProcessesAsync(processContainerId, processDefinitionId, e.getIn().getBody(List.class)))))
+                .doCatch(CallNotPermittedException.class, BulkheadFullException.class).onWhen(e -> spillover.isEnabled())
+                    // the start was rejected before reaching the kie-server: replayed once the breakers close
+                    .process(this::spillBatch)
+                    .stop()
+                .doCatch(Exception.class)
+                    .process(this::failBatch)
+                    .stop()
+                .end()
+                .split(body())
+                    .process(ItemHeadersAggregationStrategy.restoreItemHeaders())
+                    .choice()
+                        .when(simple("${body.success}"))
+                            .log("a process instance has been created with Id ${body.processInstanceId}")
+                            .process(e -> completed(e.getIn().getHeaders(), true))
+                        .when(e -> spillover.isEnabled() && KieCallGuard.isRejection(e.getIn().getBody(ProcessStartResult.class).getError()))
+                            // process server unavailable: the trigger is replayed once the breakers close
+                            .process(e -> spill(e.getIn().getHeader(TRIGGER_HEADER)))
+                            .process(e -> completed(e.getIn().getHeaders(), false))
+                        .otherwise()
+                            // redelivered (or dead lettered), it holds back the offsets until then
+                            .process(e -> failed(e.getIn().getHeaders(), e.getIn().getBody(ProcessStartResult.class).getError()))
+                    .end()
+                    .process(pipelineMetrics.completedStage("process", priority))
+                        .id("startProcess".equals(queue) ? PROCESS_STAGE_COMPLETED_ID : PROCESS_STAGE_COMPLETED_ID + "-" + priority);
+    }
+
+    /**
+     * @return the priority lanes configured with camel.priority.lanes, null when there are none
+     */
+    private PriorityClassifier priorityClassifier() {
+        List<PriorityClassifier.Lane> lanes = new ArrayList<>();
+        for (String name : priorityLanes.split(",")) {
+            name = name.trim();
+            if (!name.isEmpty()) {
+                String rule = environment.getProperty("camel.priority.lane." + name + ".rule", "").trim();
+                int weight = environment.getProperty("camel.priority.lane." + name + ".weight", Integer.class, 1);
+                LOG.info("priority lane {}: weight {}, rule [{}]", name, weight, rule.isEmpty() ? "everything else" : rule);
+                lanes.add(new PriorityClassifier.Lane(name, rule.isEmpty() ? null : simple(rule), weight));
+            }
+        }
+        return lanes.isEmpty() ? null : new PriorityClassifier(lanes);
+    }
+
+    private static List<String> stageQueues(String stage, PriorityClassifier priorityClassifier) {
+        if (priorityClassifier == null) {
+            return Collections.singletonList(stage);
+        }
+        return priorityClassifier.getLanes().stream().map(lane -> stage + "-" + lane.getName()).collect(Collectors.toList());
+    }
+
+    /**
+     * Spill the triggers of a rejected batch: once synced to the spill file (on a persistent volume) they are
+     * done with as far as Kafka is concerned, so their offsets move on
+     */
+    @SuppressWarnings("unchecked")
+    private void spillBatch(Exchange batch) throws IOException {
+        List<Map<String, Object>> items = batch.getIn().getHeader(ItemHeadersAggregationStrategy.ITEM_HEADERS, List.class);
+        for (Map<String, Object> headers : items) {
+            spill(headers.get(TRIGGER_HEADER));
+            completed(headers, false);
+        }
+    }
+
+    /**
+     * Fail every trigger of a failed batch
+     */
+    @SuppressWarnings("unchecked")
+    private void failBatch(Exchange batch) {
+        Exception error = batch.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+        List<Map<String, Object>> items = batch.getIn().getHeader(ItemHeadersAggregationStrategy.ITEM_HEADERS, List.class);
+        for (Map<String, Object> headers : items) {
+            failed(headers, error);
+        }
+    }
+
+    /**
+     * Fail the trigger(s) of an exchange a route gave up on: a whole batch, the item of a split batch,
+     * or a single trigger
+     */
+    @SuppressWarnings("unchecked")
+    private void failExchange(Exchange exchange) {
+        Exception error = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+        List<Map<String, Object>> items = exchange.getIn().getHeader(ItemHeadersAggregationStrategy.ITEM_HEADERS, List.class);
+        Integer index = exchange.getProperty(Exchange.SPLIT_INDEX, Integer.class);
+        if (items == null) {
+            failed(exchange.getIn().getHeaders(), error);
+        } else if (index != null && index < items.size()) {
+            failed(items.get(index), error);
+        } else {
+            failBatch(exchange);
+        }
+    }
+
+    /**
+     * A trigger failed. With at-least-once offsets it stays in flight and is redelivered from Kafka, up to
+     * kafka.offsets.retry.max-attempts times, then goes to the dead letter topic; a replayed trigger is spilled
+     * again. Otherwise it is logged and given up.
+     */
+    private void failed(Map<String, Object> headers, Throwable error) {
+        Object trigger = headers.get(TRIGGER_HEADER);
+        String reason = error == null ? null : error.getMessage();
+        Object dedupKey = headers.get(DEDUP_KEY_HEADER);
+        if (dedupKey != null) {
+            // the redelivery must not be dropped as a duplicate
+            dedupRepository.remove(dedupKey.toString());
+        }
+        Object startKey = headers.get(START_KEY_HEADER);
+        if (startKey != null) {
+            startClaims.release(startKey.toString());
+        }
+        if (headers.containsKey(REPLAYED_HEADER)) {
+            try {
+                spill(trigger);
+            } catch (IOException e) {
+                LOG.error("unable to spill replayed trigger {} again, it stays in the replay file: {}", trigger, e.getMessage());
+                spillover.replayFailed();
+                return;
+            }
+            spillover.replayCompleted();
+            return;
+        }
+        int attempts = offsetTracker.failedRecord(headers);
+        if (attempts < 0) {
+            LOG.error("failed to process trigger {}, giving up: {}", trigger, reason);
+        } else if (attempts == 0) {
+            LOG.warn("failed to process trigger {}, already done with or redelivered by another consumer: {}", trigger, reason);
+        } else if (attempts < retryMaxAttempts) {
+            LOG.warn("failed to process trigger {} ({} attempts), redelivering: {}", trigger, attempts, reason);
+        } else {
+            deadLetter(headers, trigger, reason);
+        }
+    }
+
+    /**
+     * Publish a trigger failing over and over to the dead letter topic and complete it once acknowledged;
+     * if that fails too it stays in flight, and is dead lettered again on its next failure
+     */
+    private void deadLetter(Map<String, Object> headers, Object triggers, String reason) {
+        LOG.error("failed to process trigger {} {} times, dead lettered to {}: {}", triggers, retryMaxAttempts, deadLetterTopic, reason);
+        try {
+            for (Object trigger : triggers instanceof Collection ? (Collection<?>) triggers : Collections.singletonList(triggers)) {
+                deadLetterTemplate.sendBodyAndHeader(String.format("kafka:%s?brokers=%s:%s&serializerClass=%s&bridgeEndpoint=true&%s",
+                    deadLetterTopic, kafkaHost, kafkaPort, KAFKA_SERIALIZER_CLASS_CONFIG, triggerPublisher.camelProducerOptions()),
+                    trigger, KafkaConstants.KEY, ((Trigger) trigger).getMemberId());
+            }
+        } catch (RuntimeException e) {
+            LOG.error("unable to dead letter trigger {}: {}", triggers, e.getMessage());
+            return;
+        }
+        completed(headers, false);
+    }
+
+    /**
+     * A trigger is done with: its offset moves on (or its spill file, for a replayed trigger), and its dedup key
+     * (or process start key) is kept only if the trigger went through, a redelivery of a failed or spilled
+     * trigger is not dropped
+     */
+    private void completed(Map<String, Object> headers, boolean succeeded) {
+        offsetTracker.completedRecord(headers);
+        if (headers.containsKey(REPLAYED_HEADER)) {
+            spillover.replayCompleted();
+        }
+        Object startKey = headers.get(START_KEY_HEADER);
+        if (startKey != null && !succeeded) {
+            startClaims.release(startKey.toString());
+        }
+        Object dedupKey = headers.get(DEDUP_KEY_HEADER);
+        if (dedupKey == null) {
+            return;
+        }
+        if (succeeded) {
+            dedupRepository.processed(dedupKey.toString());
+        } else {
+            dedupRepository.remove(dedupKey.toString());
+        }
+    }
+
+    /**
+     * Spill a trigger, or each trigger of a coalesced set: they are replayed one by one
+     */
+    private void spill(Object triggers) throws IOException {
+        if (triggers instanceof Collection) {
+            for (Object trigger : (Collection<?>) triggers) {
+                spillover.spill((Trigger) trigger);
+            }
+        } else {
+            spillover.spill((Trigger) triggers);
+        }
+    }
+
+    /**
+     * Source of a Kafka subscriber route. With at-least-once offsets the route is fed by a {@link KafkaSubscription}
+     * (see OffsetTracker), otherwise by the Camel Kafka consumer with its own commits.
+     *
+     * @param groupId consumer group, null for the default one
+     */
+    private RouteDefinition subscriberRoute(String routeId, String topic, String groupId, String valueDeserializer) {
+        if (!offsetTracker.isEnabled()) {
+            return fromF("kafka:%s?brokers=%s:%s&valueDeserializer=%s&consumersCount=%s%s", topic, kafkaHost, kafkaPort,
+                    valueDeserializer, kafkaConsumers, groupId == null ? "" : "&groupId=" + groupId)
+                .routeId(routeId);
+        }
+        Properties config = new Properties();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaHost + ":" + kafkaPort);
+        config.put(ConsumerConfig.GROUP_ID_CONFIG, groupId == null ? subscriberGroupId : groupId);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, valueDeserializer);
+        return from("direct:" + routeId)
+            .routeId(routeId)
+            .routePolicy(new KafkaSubscription(topic, config, kafkaConsumers, offsetTracker, this::failed));
+    }
+
+    private static String memberIdOf(Object body) {
+        if (body instanceof List) {
+            // a coalesced set holds the triggers of a single member
+            return ((Trigger) ((List<?>) body).get(0)).getMemberId();
+        }
+        return ((Trigger) body).getMemberId();
+    }
+
+    private String dispatchUriOf(Trigger trigger) {
+        if (laneCount > 0) {
+            return String.format("seda:lane-%s?size=%s&blockWhenFull=true", MemberLanes.laneOf(trigger.getMemberId(), laneCount), sedaQueueSize);
+        }
+        if (!priorityLanes.trim().isEmpty()) {
+            return "direct:prioritize";
+        }
+        return String.format("seda:makeDecision?size=%s&blockWhenFull=true", sedaQueueSize);
+    }
+
+    /**
+     * Limit shared by the queues of a stage. Each queue gets a batch pool of {@code max} threads, so the
+     * aggregator never caps the stage below its limit, and the backlog seen by the limit counts both the
+     * queued triggers and the completed batches still waiting for a thread. The permits are shared between
+     * the priority lanes by their weight.
+     */
+    private AdaptiveConcurrencyLimiter stageLimiter(String stage, int min, int max, List<String> queueNames, PriorityClassifier priorityClassifier) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        if (priorityClassifier != null) {
+            priorityClassifier.getLanes().forEach(lane -> weights.put(lane.getName(), lane.getWeight()));
+        }
+        List<SedaEndpoint> queues = new ArrayList<>();
+        List<ExecutorService> pools = new ArrayList<>();
+        for (String queueName : queueNames) {
+            SedaEndpoint queue = getContext().getEndpoint(String.format("seda:%s?size=%s", queueName, sedaQueueSize), SedaEndpoint.class);
+            pipelineMetrics.bindStage(queueName, queue, null);
+            queues.add(queue);
+            ExecutorService pool = getContext().getExecutorServiceManager().newFixedThreadPool(this, queueName + "-batches", max);
+            batchPools.put(queueName, pool);
+            pools.add(pool);
+        }
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(stage, min, max, limitLatencyTolerance, limitBackoff,
+            () -> queues.stream().mapToInt(SedaEndpoint::getCurrentQueueSize).sum() + pools.stream().mapToInt(CamelRouter::queuedBatches).sum(), weights);
+        stageLimiters.put(stage, limiter);
+        pipelineMetrics.bindLimiter(stage, limiter);
+        return limiter;
+    }
+
+    private static int queuedBatches(ExecutorService pool) {
+        return pool instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) pool).getQueue().size() : 0;
+    }
+
+    public Map<String, AdaptiveConcurrencyLimiter> getStageLimiters() {
+        return stageLimiters;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.health_insurance.integration;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import org.apache.camel.AsyncCallback;
+import org.apache.camel.AsyncProcessor;
+import org.apache.camel.Exchange;
+import org.apache.camel.util.AsyncProcessorHelper;
+
+/**
+ * Camel {@link AsyncProcessor} around a call returning a {@link CompletableFuture}.
+ * The exchange is released by the calling thread and routing continues on the thread that
+ * completes the future, with the future result as the new body.
+ */
+public class CompletableFutureProcessor implements AsyncProcessor {
+
+    private final Function<Exchange, CompletableFuture<?>> call;
+
+    public CompletableFutureProcessor(Function<Exchange, CompletableFuture<?>> call) {
+        this.call = call;
+    }
+
+    @Override
+    public boolean process(Exchange exchange, AsyncCallback callback) {
+        CompletableFuture<?> future;
+        try {
+            future = call.apply(exchange);
+        } catch (Exception e) {
+            exchange.setException(e);
+            callback.done(true);
+            return true;
+        }
+
+        if (future.isDone()) {
+            complete(exchange, future.handle((r, t) -> t == null ? r : t).join(), future.isCompletedExceptionally());
+            callback.done(true);
+            return true;
+        }
+
+        future.whenComplete((result, error) -> {
+            complete(exchange, error != null ? error : result, error != null);
+            callback.done(false);
+        });
+        return false;
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        AsyncProcessorHelper.process(this, exchange);
+    }
+
+    private static void complete(Exchange exchange, Object outcome, boolean failed) {
+        if (failed) {
+            Throwable error = (Throwable) outcome;
+            exchange.setException(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+        } else {
+            exchange.getIn().setBody(outcome);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.health_insurance.integration;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.health_insurance.phm_model.Trigger;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Turns a {@link Trigger} body into the decision facts map expected by the kie client.
+ *
+ * A collection of triggers (the coalesced triggers of a member) becomes a single fact set.
+ */
+public class DecisionFactsProcessor implements Processor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DecisionFactsProcessor.class);
+
+    @Override
+    public void process(Exchange e) throws Exception {
+        LOG.debug("Decision request Body: " + e.getIn().getBody());
+        Map<String, Object> decisionFacts = new HashMap<>();
+        Object body = e.getIn().getBody();
+        if (body instanceof Collection) {
+            for (Object trigger : (Collection<?>) body) {
+                decisionFacts.put(Integer.toString(((Trigger) trigger).getTriggerId()), trigger);
+            }
+        } else {
+            Trigger trigger = e.getIn().getBody(Trigger.class);
+            decisionFacts.put(Integer.toString(trigger.getTriggerId()), trigger);
+        }
+        e.getIn().setBody(decisionFacts);
+    }
+}
@@ -0,0 +1,95 @@
+package com.health_insurance.integration;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.health_insurance.kie.BusinessAutomationClient;
+import com.health_insurance.phm_model.Response;
+import com.health_insurance.phm_model.Trigger;
+
+/**
+ * What the decision stage hands over to the process stage in cluster mode: the triggers of the decision
+ * and the {@link Response} facts the rules produced for them.
+ */
+public class DecisionOutcome {
+
+    private List<Trigger> triggers = new ArrayList<>();
+    private List<Response> resultFactObjects = new ArrayList<>();
+
+    public DecisionOutcome() {
+    }
+
+    /**
+     * @param triggers a {@link Trigger} or the collection of coalesced triggers the decision was made for
+     * @param decisionResult result facts map returned by the kie client, of a decision made
+     */
+    public static DecisionOutcome of(Object triggers, Map<?, ?> decisionResult) {
+        String decisionError = BusinessAutomationClient.decisionErrorOf(decisionResult);
+        if (decisionError != null) {
+            throw new IllegalArgumentException("no outcome for a failed decision: " + decisionError);
+        }
+        DecisionOutcome outcome = new DecisionOutcome();
+        if (triggers instanceof Collection) {
+            for (Object trigger : (Collection<?>) triggers) {
+                outcome.triggers.add((Trigger) trigger);
+            }
+        } else {
+            outcome.triggers.add((Trigger) triggers);
+        }
+        Object facts = decisionResult.get("resultFactObjects");
+        if (facts instanceof Collection) {
+            for (Object fact : (Collection<?>) facts) {
+                if (fact instanceof Response) {
+                    outcome.resultFactObjects.add((Response) fact);
+                }
+            }
+        }
+        return outcome;
+    }
+
+    /**
+     * @return the outcome as the decision result map the process stage starts from
+     */
+    public Map<String, Object> toDecisionResult() {
+        return Collections.<String, Object>singletonMap("resultFactObjects", resultFactObjects);
+    }
+
+    @JsonIgnore
+    public String getMemberId() {
+        return triggers.isEmpty() ? null : triggers.get(0).getMemberId();
+    }
+
+    /**
+     * @return the idempotency key of the outcome, the same (triggerId, memberId) key as the ingest dedup
+     */
+    @JsonIgnore
+    public String getKey() {
+        Trigger first = triggers.get(0);
+        return first.getTriggerId() + ":" + first.getMemberId();
+    }
+
+    public List<Trigger> getTriggers() {
+        return triggers;
+    }
+
+    public void setTriggers(List<Trigger> triggers) {
+        this.triggers = triggers;
+    }
+
+    public List<Response> getResultFactObjects() {
+        return resultFactObjects;
+    }
+
+    public void setResultFactObjects(List<Response> resultFactObjects) {
+        this.resultFactObjects = resultFactObjects;
+    }
+
+    @Override
+    public String toString() {
+        return "DecisionOutcome [triggers=" + triggers + ", resultFactObjects=" + resultFactObjects.size() + "]";
+    }
+}
@@ -0,0 +1,38 @@
+package com.health_insurance.integration;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Kafka value deserializer for the {@link DecisionOutcome} handed over between the cluster stages,
+ * a record that cannot be read is logged and comes out as {@code null} so the consumer skips it
+ */
+public class DecisionOutcomeDeserializer implements Deserializer<DecisionOutcome> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DecisionOutcomeDeserializer.class);
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+    }
+
+    @Override
+    public DecisionOutcome deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return TriggerCodec.decodeOutcome(data);
+        } catch (IOException e) {
+            LOG.warn("skipping a record of topic {} that is not a valid decision outcome: {}", topic, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,33 @@
+package com.health_insurance.integration;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Kafka value serializer for the {@link DecisionOutcome} handed over between the cluster stages
+ */
+public class DecisionOutcomeSerializer implements Serializer<DecisionOutcome> {
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+    }
+
+    @Override
+    public byte[] serialize(String topic, DecisionOutcome outcome) {
+        if (outcome == null) {
+            return null;
+        }
+        try {
+            return TriggerCodec.encodeOutcome(outcome);
+        } catch (IOException e) {
+            throw new SerializationException("Unable to serialize " + outcome, e);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
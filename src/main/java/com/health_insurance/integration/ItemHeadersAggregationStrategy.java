@@ -0,0 +1,58 @@
+package com.health_insurance.integration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.processor.aggregate.AggregationStrategy;
+
+/**
+ * Groups message bodies into a list like {@code GroupedBodyAggregationStrategy}, and also keeps the
+ * headers of every grouped message so they can be put back on each item after the batch is split.
+ */
+public class ItemHeadersAggregationStrategy implements AggregationStrategy {
+
+    public static final String ITEM_HEADERS = "phmItemHeaders";
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Exchange aggregate(Exchange oldExchange, Exchange newExchange) {
+        if (oldExchange == null) {
+            List<Object> bodies = new ArrayList<>();
+            List<Map<String, Object>> headers = new ArrayList<>();
+            bodies.add(newExchange.getIn().getBody());
+            headers.add(itemHeaders(newExchange));
+            newExchange.getIn().setBody(bodies);
+            newExchange.getIn().setHeader(ITEM_HEADERS, headers);
+            return newExchange;
+        }
+        oldExchange.getIn().getBody(List.class).add(newExchange.getIn().getBody());
+        oldExchange.getIn().getHeader(ITEM_HEADERS, List.class).add(itemHeaders(newExchange));
+        return oldExchange;
+    }
+
+    /**
+     * Processor to use inside a {@code split(body())} of the batch result: restores the headers the
+     * current item had before being grouped
+     */
+    @SuppressWarnings("unchecked")
+    public static Processor restoreItemHeaders() {
+        return e -> {
+            List<?> headers = e.getIn().getHeader(ITEM_HEADERS, List.class);
+            Integer index = e.getProperty(Exchange.SPLIT_INDEX, Integer.class);
+            if (headers != null && index != null && index < headers.size()) {
+                e.getIn().removeHeader(ITEM_HEADERS);
+                e.getIn().getHeaders().putAll((Map<String, Object>) headers.get(index));
+            }
+        };
+    }
+
+    private static Map<String, Object> itemHeaders(Exchange exchange) {
+        Map<String, Object> headers = new HashMap<>(exchange.getIn().getHeaders());
+        headers.remove(ITEM_HEADERS);
+        return headers;
+    }
+}
@@ -0,0 +1,144 @@
+package com.health_insurance.integration;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Endpoint;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.Route;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.support.RoutePolicySupport;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Kafka consumers of an at-least-once subscriber route, attached to it as its route policy: they start and
+ * stop with the route, so its autoStartup and startRoute gate them like any Camel consumer.
+ *
+ * The poll loop is ours rather than the Camel Kafka consumer's, because the {@link OffsetTracker} needs the
+ * consumer thread after every poll, records or not (commits, pause and rewind of failed partitions) and on
+ * every rebalance. Each record is sent through the route with the usual {@code kafka.*} headers; a record
+ * failing in the route itself goes to the failure handler like one failing further down the pipeline.
+ */
+class KafkaSubscription extends RoutePolicySupport {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KafkaSubscription.class);
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    private final String topic;
+    private final Properties config;
+    private final int consumers;
+    private final OffsetTracker offsetTracker;
+    private final BiConsumer<Map<String, Object>, Throwable> onFailure;
+
+    private final Collection<KafkaConsumer<String, Object>> running = new CopyOnWriteArrayList<>();
+    private ExecutorService pollers;
+    private ProducerTemplate template;
+    private volatile boolean stopping;
+
+    /**
+     * @param config consumer configuration: brokers, group and value deserializer
+     * @param onFailure called with the headers and error of a record the route failed
+     */
+    KafkaSubscription(String topic, Properties config, int consumers, OffsetTracker offsetTracker, BiConsumer<Map<String, Object>, Throwable> onFailure) {
+        this.topic = topic;
+        this.config = new Properties();
+        this.config.putAll(config);
+        this.config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        this.config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        this.consumers = consumers;
+        this.offsetTracker = offsetTracker;
+        this.onFailure = onFailure;
+    }
+
+    @Override
+    public void onStart(Route route) {
+        CamelContext context = route.getEndpoint().getCamelContext();
+        stopping = false;
+        template = context.createProducerTemplate();
+        pollers = context.getExecutorServiceManager().newFixedThreadPool(this, route.getId() + "-kafka", consumers);
+        for (int i = 0; i < consumers; i++) {
+            pollers.execute(() -> poll(route.getEndpoint()));
+        }
+        LOG.info("{} consumer(s) of {} started for route {}", consumers, topic, route.getId());
+    }
+
+    @Override
+    public void onStop(Route route) {
+        if (pollers == null) {
+            return;
+        }
+        stopping = true;
+        running.forEach(KafkaConsumer::wakeup);
+        route.getEndpoint().getCamelContext().getExecutorServiceManager().shutdownGraceful(pollers, TimeUnit.SECONDS.toMillis(30));
+        pollers = null;
+        try {
+            template.stop();
+        } catch (Exception e) {
+            LOG.warn("unable to stop the producer template of {}: {}", route.getId(), e.getMessage());
+        }
+    }
+
+    private void poll(Endpoint endpoint) {
+        try (KafkaConsumer<String, Object> consumer = new KafkaConsumer<>(config)) {
+            running.add(consumer);
+            consumer.subscribe(Collections.singletonList(topic), new ConsumerRebalanceListener() {
+                @Override
+                public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+                    offsetTracker.revoked(consumer, partitions);
+                }
+
+                @Override
+                public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+                    LOG.info("consuming {}", partitions);
+                }
+            });
+            try {
+                while (!stopping) {
+                    for (ConsumerRecord<String, Object> record : consumer.poll(POLL_TIMEOUT)) {
+                        dispatch(endpoint, record);
+                    }
+                    offsetTracker.polled(consumer);
+                }
+            } catch (WakeupException e) {
+                // stopping
+            } finally {
+                running.remove(consumer);
+                offsetTracker.revoked(consumer, consumer.assignment());
+            }
+        } catch (RuntimeException e) {
+            LOG.error("consumer of {} stopped: {}", topic, e.getMessage(), e);
+        }
+    }
+
+    private void dispatch(Endpoint endpoint, ConsumerRecord<String, Object> record) {
+        Exchange exchange = endpoint.createExchange();
+        Message in = exchange.getIn();
+        in.setHeader(KafkaConstants.TOPIC, record.topic());
+        in.setHeader(KafkaConstants.PARTITION, record.partition());
+        in.setHeader(KafkaConstants.OFFSET, record.offset());
+        in.setHeader(KafkaConstants.KEY, record.key());
+        in.setBody(record.value());
+        template.send(endpoint, exchange);
+        if (exchange.getException() != null) {
+            onFailure.accept(exchange.getIn().getHeaders(), exchange.getException());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.health_insurance.integration;
+
+import java.util.Arrays;
+
+/**
+ * Minimal open addressing set of primitive longs (no boxing, 8 bytes per slot).
+ * Not thread safe.
+ */
+class LongHashSet {
+
+    // 0 marks a free slot, so the value 0 is tracked on its own
+    private static final long FREE = 0L;
+
+    private long[] slots;
+    private boolean hasZero;
+    private int size;
+
+    LongHashSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2) - 1) << 1;
+        slots = new long[capacity];
+    }
+
+    boolean add(long value) {
+        if (value == FREE) {
+            boolean added = !hasZero;
+            hasZero = true;
+            size += added ? 1 : 0;
+            return added;
+        }
+        if ((size + 1) * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        int index = indexOf(value, slots);
+        if (slots[index] == value) {
+            return false;
+        }
+        slots[index] = value;
+        size++;
+        return true;
+    }
+
+    boolean contains(long value) {
+        if (value == FREE) {
+            return hasZero;
+        }
+        return slots[indexOf(value, slots)] == value;
+    }
+
+    boolean remove(long value) {
+        if (value == FREE) {
+            boolean removed = hasZero;
+            hasZero = false;
+            size -= removed ? 1 : 0;
+            return removed;
+        }
+        int index = indexOf(value, slots);
+        if (slots[index] != value) {
+            return false;
+        }
+        slots[index] = FREE;
+        size--;
+        // re-insert the rest of the probe chain so lookups do not stop at the hole
+        int mask = slots.length - 1;
+        for (int i = (index + 1) & mask; slots[i] != FREE; i = (i + 1) & mask) {
+            long moved = slots[i];
+            slots[i] = FREE;
+            slots[indexOf(moved, slots)] = moved;
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(slots, FREE);
+        hasZero = false;
+        size = 0;
+    }
+
+    long[] toArray() {
+        long[] values = new long[size];
+        int i = 0;
+        if (hasZero) {
+            values[i++] = FREE;
+        }
+        for (long slot : slots) {
+            if (slot != FREE) {
+                values[i++] = slot;
+            }
+        }
+        return values;
+    }
+
+    private void rehash(int capacity) {
+        long[] old = slots;
+        slots = new long[capacity];
+        for (long value : old) {
+            if (value != FREE) {
+                slots[indexOf(value, slots)] = value;
+            }
+        }
+    }
+
+    private static int indexOf(long value, long[] table) {
+        int mask = table.length - 1;
+        long h = value * 0x9E3779B97F4A7C15L;
+        int index = (int) (h ^ (h >>> 32)) & mask;
+        while (table[index] != FREE && table[index] != value) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+}
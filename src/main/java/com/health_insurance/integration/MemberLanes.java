@@ -0,0 +1,20 @@
+package com.health_insurance.integration;
+
+/**
+ * Maps a member onto one of a fixed number of worker lanes
+ */
+public final class MemberLanes {
+
+    private MemberLanes() {
+    }
+
+    public static int laneOf(String memberId, int laneCount) {
+        if (memberId == null) {
+            return 0;
+        }
+        int h = memberId.hashCode();
+        // spread the bits so members with close ids do not pile up on the same lanes
+        h ^= (h >>> 16);
+        return Math.floorMod(h, laneCount);
+    }
+}
@@ -0,0 +1,182 @@
+package com.health_insurance.integration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.health_insurance.phm_model.Trigger;
+
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.Topology;
+import org.apache.kafka.streams.errors.LogAndContinueExceptionHandler;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Transformer;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.PunctuationType;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.Stores;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Coalesces the triggers of a member arriving close together into one combined fact set.
+ *
+ * A Kafka Streams topology re-keys the trigger topic by memberId (through {@code kafka.coalesce.repartition-topic})
+ * and collects the triggers of each member into an open session. A session ends after {@code kafka.coalesce.window}
+ * ms without a new trigger for the member, measured on the wall clock every {@code kafka.coalesce.flush-interval} ms,
+ * so the last sessions of a quiet partition are emitted too. A closed session is emitted as the list of its triggers
+ * to {@code kafka.coalesce.topic}, which the Kafka subscriber then consumes instead of the trigger topic.
+ * Open sessions live in persistent (RocksDB) stores backed by changelog topics, so they survive restarts and move
+ * with their partitions on a rebalance.
+ */
+@Component
+@ConditionalOnProperty(name = "kafka.coalesce.enabled", havingValue = "true")
+public class MemberTriggerCoalescer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MemberTriggerCoalescer.class);
+    private static final String SESSION_STORE = "member-sessions";
+    private static final String LAST_SEEN_STORE = "member-last-seen";
+
+    @Value("${kafka.topic:test}")
+    String kafkaTopic;
+    @Value("${kafka.host:localhost}")
+    String kafkaHost;
+    @Value("${kafka.port:9092}")
+    String kafkaPort;
+
+    @Value("${kafka.coalesce.topic:phm-trigger-coalesced}")
+    String coalescedTopic;
+    @Value("${kafka.coalesce.repartition-topic:phm-trigger-by-member}")
+    String repartitionTopic;
+    @Value("${kafka.coalesce.application-id:phm-trigger-coalescer}")
+    String applicationId;
+    @Value("${kafka.coalesce.window:5000}")
+    long windowMillis;
+    @Value("${kafka.coalesce.flush-interval:1000}")
+    long flushInterval;
+    @Value("${kafka.coalesce.threads:1}")
+    int threads;
+    @Value("${kafka.coalesce.state-dir:/tmp/kafka-streams}")
+    String stateDir;
+    @Value("${kafka.coalesce.commit-interval:1000}")
+    long commitInterval;
+
+    private KafkaStreams streams;
+
+    @PostConstruct
+    public void start() {
+        LOG.info("\t coalescing triggers per member: {} -> {} (session gap {}ms)", kafkaTopic, coalescedTopic, windowMillis);
+        Properties config = new Properties();
+        config.put(StreamsConfig.APPLICATION_ID_CONFIG, applicationId);
+        config.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaHost + ":" + kafkaPort);
+        config.put(StreamsConfig.NUM_STREAM_THREADS_CONFIG, threads);
+        config.put(StreamsConfig.STATE_DIR_CONFIG, stateDir);
+        config.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, commitInterval);
+        // an unreadable key is logged and skipped (unreadable values already come out as null)
+        config.put(StreamsConfig.DEFAULT_DESERIALIZATION_EXCEPTION_HANDLER_CLASS_CONFIG, LogAndContinueExceptionHandler.class);
+
+        streams = new KafkaStreams(topology(), config);
+        streams.setStateListener((newState, oldState) -> LOG.info("member coalescer {} -> {}", oldState, newState));
+        streams.start();
+    }
+
+    Topology topology() {
+        Serde<Trigger> triggerSerde = Serdes.serdeFrom(new TriggerSerializer(), new TriggerDeserializer());
+        Serde<List<Trigger>> triggersSerde = Serdes.serdeFrom(new TriggerListSerializer(), new TriggerListDeserializer());
+
+        StreamsBuilder builder = new StreamsBuilder();
+        builder.addStateStore(Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(SESSION_STORE), Serdes.String(), triggersSerde));
+        builder.addStateStore(Stores.keyValueStoreBuilder(Stores.persistentKeyValueStore(LAST_SEEN_STORE), Serdes.String(), Serdes.Long()));
+
+        builder.stream(kafkaTopic, Consumed.with(Serdes.String(), triggerSerde))
+            // records the deserializer could not read
+            .filter((key, trigger) -> trigger != null)
+            // producers other than this service may not key the records by member
+            .selectKey((key, trigger) -> trigger.getMemberId())
+            .through(repartitionTopic, Produced.with(Serdes.String(), triggerSerde))
+            // one record per member session, once the session is closed
+            .transform(MemberSessions::new, SESSION_STORE, LAST_SEEN_STORE)
+            .to(coalescedTopic, Produced.with(Serdes.String(), triggersSerde));
+        return builder.build();
+    }
+
+    public KafkaStreams.State getState() {
+        return streams.state();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (streams != null) {
+            streams.close(Duration.ofSeconds(10));
+        }
+    }
+
+    /**
+     * Open sessions of the members of one partition: a trigger joins its member's session, a wall clock
+     * punctuator emits (and forgets) the sessions idle for the whole window
+     */
+    private class MemberSessions implements Transformer<String, Trigger, KeyValue<String, List<Trigger>>> {
+
+        private ProcessorContext context;
+        private KeyValueStore<String, List<Trigger>> sessions;
+        private KeyValueStore<String, Long> lastSeen;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void init(ProcessorContext context) {
+            this.context = context;
+            this.sessions = (KeyValueStore<String, List<Trigger>>) context.getStateStore(SESSION_STORE);
+            this.lastSeen = (KeyValueStore<String, Long>) context.getStateStore(LAST_SEEN_STORE);
+            context.schedule(Duration.ofMillis(flushInterval), PunctuationType.WALL_CLOCK_TIME, this::closeIdleSessions);
+        }
+
+        @Override
+        public KeyValue<String, List<Trigger>> transform(String member, Trigger trigger) {
+            List<Trigger> triggers = sessions.get(member);
+            if (triggers == null) {
+                triggers = new ArrayList<>();
+            }
+            triggers.add(trigger);
+            sessions.put(member, triggers);
+            lastSeen.put(member, System.currentTimeMillis());
+            return null;
+        }
+
+        private void closeIdleSessions(long now) {
+            List<String> idle = new ArrayList<>();
+            try (KeyValueIterator<String, Long> members = lastSeen.all()) {
+                while (members.hasNext()) {
+                    KeyValue<String, Long> member = members.next();
+                    if (now - member.value >= windowMillis) {
+                        idle.add(member.key);
+                    }
+                }
+            }
+            for (String member : idle) {
+                List<Trigger> triggers = sessions.delete(member);
+                lastSeen.delete(member);
+                if (triggers != null && !triggers.isEmpty()) {
+                    context.forward(member, triggers);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
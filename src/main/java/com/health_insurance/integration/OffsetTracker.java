@@ -0,0 +1,196 @@
+package com.health_insurance.integration;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * At-least-once offset management for the Kafka ingest.
+ *
+ * Each record is registered when the subscriber hands it off and marked complete once its process
+ * start succeeded (or the trigger was spilled or dead lettered). Offsets are committed only up to the
+ * contiguous watermark of completed records, in batches, by the {@link KafkaSubscription} poll loop that
+ * owns the partition: after every poll, so an idle partition commits its completed tail too.
+ *
+ * A failed record stays in flight and pauses its partition; once the retry backoff is over the partition
+ * is rewound to the failed record, which is redelivered along with the records after it.
+ * A revoked partition commits its watermark and is forgotten, its new owner starts from there.
+ */
+@Component
+public class OffsetTracker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OffsetTracker.class);
+
+    @Value("${kafka.offsets.at-least-once:false}")
+    boolean enabled;
+    @Value("${kafka.offsets.commit.batch-size:100}")
+    int commitBatchSize;
+    @Value("${kafka.offsets.commit.interval:1000}")
+    long commitInterval;
+    @Value("${kafka.offsets.retry.backoff:5000}")
+    long retryBackoff;
+
+    private final Map<TopicPartition, OffsetWatermark> watermarks = new ConcurrentHashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Register the record carried by the exchange
+     */
+    public void dispatched(Exchange exchange) {
+        dispatchedRecord(exchange.getIn().getHeaders());
+    }
+
+    public void dispatchedRecord(Map<String, Object> headers) {
+        TopicPartition partition = enabled ? partitionOf(headers) : null;
+        if (partition != null) {
+            watermarks.computeIfAbsent(partition, p -> new OffsetWatermark()).dispatched(offsetOf(headers));
+        }
+    }
+
+    /**
+     * Register the record carried by the exchange as done right away (unreadable record, duplicate)
+     */
+    public void skipped(Exchange exchange) {
+        dispatched(exchange);
+        completed(exchange);
+    }
+
+    /**
+     * Mark the record carried by the exchange as fully processed
+     */
+    public void completed(Exchange exchange) {
+        completedRecord(exchange.getIn().getHeaders());
+    }
+
+    /**
+     * Mark the record with the given headers as fully processed, for items of a batch that ends
+     * before the batch is split back into its records
+     */
+    public void completedRecord(Map<String, Object> headers) {
+        TopicPartition partition = enabled ? partitionOf(headers) : null;
+        OffsetWatermark watermark = partition == null ? null : watermarks.get(partition);
+        if (watermark != null) {
+            watermark.completed(offsetOf(headers));
+        }
+    }
+
+    /**
+     * The record with the given headers failed: it stays in flight and its partition is rewound to it
+     * after the retry backoff
+     *
+     * @return how many times the record failed, 0 when there is nothing to redeliver from here (record
+     * already completed, or its partition moved to another consumer, which starts from the committed offset),
+     * -1 when the record is not tracked (at-least-once off, or not a Kafka record)
+     */
+    public int failedRecord(Map<String, Object> headers) {
+        TopicPartition partition = enabled ? partitionOf(headers) : null;
+        if (partition == null) {
+            return -1;
+        }
+        OffsetWatermark watermark = watermarks.get(partition);
+        return watermark == null ? 0 : watermark.failed(offsetOf(headers));
+    }
+
+    /**
+     * Run by the poll loop after every poll, on the consumer thread: pause or rewind the partitions with
+     * failed records and commit the due watermarks of the partitions assigned to the consumer
+     */
+    public void polled(Consumer<?, ?> consumer) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : consumer.assignment()) {
+            OffsetWatermark watermark = watermarks.get(partition);
+            if (watermark == null) {
+                continue;
+            }
+            retry(consumer, partition, watermark);
+            long offset = watermark.commitDue(commitBatchSize, commitInterval);
+            if (offset >= 0) {
+                offsets.put(partition, new OffsetAndMetadata(offset));
+            }
+        }
+        commit(consumer, offsets);
+    }
+
+    /**
+     * The partitions are taken away from the consumer (rebalance, shutdown): commit what they completed
+     * and forget them, so no later commit of this consumer carries them
+     */
+    public void revoked(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        for (TopicPartition partition : partitions) {
+            OffsetWatermark watermark = watermarks.remove(partition);
+            long offset = watermark == null ? -1 : watermark.commitDue(0, 0);
+            if (offset >= 0) {
+                offsets.put(partition, new OffsetAndMetadata(offset));
+            }
+        }
+        commit(consumer, offsets);
+    }
+
+    private void retry(Consumer<?, ?> consumer, TopicPartition partition, OffsetWatermark watermark) {
+        boolean paused = consumer.paused().contains(partition);
+        long offset = watermark.rewindDue(retryBackoff);
+        if (offset >= 0) {
+            LOG.info("rewinding {} to the failed offset {}", partition, offset);
+            consumer.seek(partition, offset);
+        } else if (watermark.hasFailed()) {
+            // nothing new from the partition until its failed records are redelivered
+            if (!paused) {
+                consumer.pause(Collections.singleton(partition));
+            }
+            return;
+        }
+        if (paused) {
+            consumer.resume(Collections.singleton(partition));
+        }
+    }
+
+    private void commit(Consumer<?, ?> consumer, Map<TopicPartition, OffsetAndMetadata> offsets) {
+        if (offsets.isEmpty()) {
+            return;
+        }
+        try {
+            consumer.commitSync(offsets);
+        } catch (KafkaException e) {
+            // e.g. a rebalance in progress: the partitions are committed again on the next poll, or revoked
+            LOG.warn("offset commit of {} failed: {}", offsets.keySet(), e.getMessage());
+            return;
+        }
+        offsets.forEach((partition, offset) -> {
+            OffsetWatermark watermark = watermarks.get(partition);
+            if (watermark != null) {
+                watermark.committed(offset.offset());
+                LOG.debug("committed {} at offset {} ({} records in flight)", partition, offset.offset(), watermark.inFlight());
+            }
+        });
+    }
+
+    private static long offsetOf(Map<String, Object> headers) {
+        return ((Number) headers.get(KafkaConstants.OFFSET)).longValue();
+    }
+
+    private static TopicPartition partitionOf(Map<String, Object> headers) {
+        Object topic = headers.get(KafkaConstants.TOPIC);
+        Object partition = headers.get(KafkaConstants.PARTITION);
+        if (topic == null || !(partition instanceof Number) || !(headers.get(KafkaConstants.OFFSET) instanceof Number)) {
+            return null;
+        }
+        return new TopicPartition(topic.toString(), ((Number) partition).intValue());
+    }
+}
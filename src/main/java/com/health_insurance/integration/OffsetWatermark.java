@@ -0,0 +1,158 @@
+package com.health_insurance.integration;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Contiguous completion watermark of one Kafka partition.
+ * 
+ * Offsets are registered when dispatched and cleared when completed, in any order. The watermark is the
+ * lowest offset still in flight (or the one after the highest dispatched when nothing is in flight), which
+ * is the offset that can be safely committed: everything before it has been fully processed.
+ * Offsets never dispatched (e.g. transaction markers) do not hold the watermark back.
+ *
+ * The bit set is indexed from the lowest offset that may still be in flight, and rebased whenever
+ * nothing is in flight, so a gap of any size between offsets stays cheap.
+ *
+ * A failed record stays in flight: the partition is rewound to the lowest failed offset once the retry
+ * backoff is over, and the record is counted as completed only when a redelivery of it went through.
+ */
+class OffsetWatermark {
+
+    // rebase the bit set once this many leading offsets are done
+    private static final int REBASE_THRESHOLD = 4096;
+
+    private long base = -1;
+    private long highest = -1;
+    private BitSet pending = new BitSet();
+
+    private long lastCommitted = -1;
+    private long lastCommitTime = System.currentTimeMillis();
+    private int completedSinceCommit;
+
+    // failed offsets waiting for the partition to be rewound, and failures of each offset in flight
+    private final TreeSet<Long> failed = new TreeSet<>();
+    private final Map<Long, Integer> attempts = new HashMap<>();
+    private long lastFailureTime;
+
+    synchronized void dispatched(long offset) {
+        if (base < 0 || offset < base) {
+            // first record, or the partition was rewound (seek, rebalance): start over from here
+            base = offset;
+            highest = offset;
+            pending = new BitSet();
+            failed.clear();
+            attempts.clear();
+        } else if (pending.isEmpty()) {
+            // nothing in flight: index from here, whatever the gap since the last record
+            base = offset;
+        } else if (offset - base > Integer.MAX_VALUE) {
+            int first = pending.nextSetBit(0);
+            pending = pending.get(first, pending.length());
+            base += first;
+            if (offset - base > Integer.MAX_VALUE) {
+                throw new IllegalStateException("offset " + offset + " is too far ahead of offset " + base + ", still in flight");
+            }
+        }
+        pending.set((int) (offset - base));
+        highest = Math.max(highest, offset);
+    }
+
+    synchronized void completed(long offset) {
+        if (base < 0 || offset < base || offset - base > Integer.MAX_VALUE) {
+            // not in flight
+            return;
+        }
+        pending.clear((int) (offset - base));
+        completedSinceCommit++;
+        failed.remove(offset);
+        attempts.remove(offset);
+    }
+
+    /**
+     * The record failed: it stays (or is put back) in flight until the partition is rewound to it
+     * and its redelivery completes
+     *
+     * @return how many times the record failed, 0 when it was already completed
+     */
+    synchronized int failed(long offset) {
+        if (base >= 0 && offset <= highest && (offset < base || !pending.get((int) (offset - base)))) {
+            return 0;
+        }
+        if (base < 0 || offset > highest) {
+            // failed before being dispatched
+            dispatched(offset);
+        }
+        failed.add(offset);
+        lastFailureTime = System.currentTimeMillis();
+        return attempts.merge(offset, 1, Integer::sum);
+    }
+
+    /**
+     * @return true while failed records wait for the partition to be rewound
+     */
+    synchronized boolean hasFailed() {
+        return !failed.isEmpty();
+    }
+
+    /**
+     * @return the offset to rewind the partition to, once the backoff since the last failure is over, otherwise -1
+     */
+    synchronized long rewindDue(long backoffMillis) {
+        if (failed.isEmpty() || System.currentTimeMillis() - lastFailureTime < backoffMillis) {
+            return -1;
+        }
+        long offset = failed.first();
+        failed.clear();
+        return offset;
+    }
+
+    /**
+     * @return the next offset to commit, or -1 when nothing was dispatched yet
+     */
+    synchronized long watermark() {
+        if (base < 0) {
+            return -1;
+        }
+        int first = pending.nextSetBit(0);
+        if (first < 0) {
+            base = highest + 1;
+            pending.clear();
+            return base;
+        }
+        if (first >= REBASE_THRESHOLD) {
+            pending = pending.get(first, pending.length());
+            base += first;
+            return base;
+        }
+        return base + first;
+    }
+
+    /**
+     * @return the offset to commit when a commit is due (enough completions or enough time since the last one)
+     * and the watermark moved, otherwise -1
+     */
+    synchronized long commitDue(int batchSize, long intervalMillis) {
+        long now = System.currentTimeMillis();
+        if (completedSinceCommit < batchSize && now - lastCommitTime < intervalMillis) {
+            return -1;
+        }
+        long next = watermark();
+        if (next <= lastCommitted) {
+            return -1;
+        }
+        return next;
+    }
+
+    synchronized void committed(long offset) {
+        lastCommitted = offset;
+        lastCommitTime = System.currentTimeMillis();
+        completedSinceCommit = 0;
+    }
+
+    synchronized int inFlight() {
+        return pending.cardinality();
+    }
+}
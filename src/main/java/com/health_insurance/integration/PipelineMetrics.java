@@ -0,0 +1,171 @@
+package com.health_insurance.integration;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.kafka.KafkaConsumerMetrics;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.Route;
+import org.apache.camel.component.seda.SedaEndpoint;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.camel.spi.RoutePolicy;
+import org.apache.camel.spi.RoutePolicyFactory;
+import org.apache.camel.support.RoutePolicySupport;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Pipeline metrics, published through Micrometer (Prometheus scrape on the management port and JMX for Jolokia).
+ *
+ * <ul>
+ * <li>{@code phm.route}: time each exchange spends in a route, tagged by route and outcome</li>
+ * <li>{@code phm.seda.queue.wait}: time an exchange waited in a SEDA queue before its route picked it up</li>
+ * <li>{@code phm.pipeline.latency}: time from Kafka consumption to the end of the decision and process stages, by priority lane</li>
+ * <li>{@code phm.seda.queue.depth} and {@code phm.stage.*}: queue depth and adaptive limits of each stage</li>
+ * <li>{@code kafka.consumer.*}: Kafka consumer metrics, including the records lag</li>
+ * </ul>
+ * Timers publish percentile histograms, so latencies can be aggregated across instances.
+ */
+@Component
+public class PipelineMetrics {
+
+    public static final String CONSUMED_AT = "phmConsumedAt";
+    public static final String ENQUEUED_AT = "phmEnqueuedAt";
+
+    @Autowired
+    MeterRegistry registry;
+    @Autowired
+    TriggerSpillover spillover;
+
+    @PostConstruct
+    public void initialize() {
+        // consumer fetch metrics (lag, fetch rate) read from the Kafka client MBeans
+        new KafkaConsumerMetrics().bindTo(registry);
+        Gauge.builder("phm.spillover.pending", spillover, PipelineMetrics::pendingSpills)
+            .description("spilled triggers waiting to be replayed")
+            .register(registry);
+    }
+
+    /**
+     * Route policies timing every exchange of every route
+     */
+    public RoutePolicyFactory routePolicyFactory() {
+        return new RoutePolicyFactory() {
+            @Override
+            public RoutePolicy createRoutePolicy(CamelContext camelContext, String routeId, RouteDefinition route) {
+                return new TimedRoutePolicy(routeId);
+            }
+        };
+    }
+
+    /**
+     * Processor marking the time a trigger was taken off Kafka
+     */
+    public Processor consumed() {
+        return e -> e.getIn().setHeader(CONSUMED_AT, System.nanoTime());
+    }
+
+    /**
+     * Processor marking the time an exchange is put on a SEDA queue, used in front of every SEDA producer
+     */
+    public Processor enqueued() {
+        return e -> e.getIn().setHeader(ENQUEUED_AT, System.nanoTime());
+    }
+
+    /**
+     * Processor recording the time since the trigger was taken off Kafka as the latency of the given stage
+     */
+    public Processor completedStage(String stage) {
+        return completedStage(stage, "none");
+    }
+
+    /**
+     * Processor recording the stage latency of the triggers of a priority lane
+     */
+    public Processor completedStage(String stage, String priority) {
+        Timer timer = timer("phm.pipeline.latency", "stage", stage, "priority", priority);
+        return e -> {
+            Long consumedAt = e.getIn().getHeader(CONSUMED_AT, Long.class);
+            if (consumedAt != null) {
+                timer.record(System.nanoTime() - consumedAt, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    /**
+     * Gauges for the queue depth and adaptive limit of a stage
+     */
+    public void bindStage(String stage, SedaEndpoint queue, AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder("phm.seda.queue.depth", queue, SedaEndpoint::getCurrentQueueSize).tag("stage", stage).register(registry);
+        if (limiter != null) {
+            bindLimiter(stage, limiter);
+        }
+    }
+
+    /**
+     * Gauges for the adaptive limit of a stage drained from several queues
+     */
+    public void bindLimiter(String stage, AdaptiveConcurrencyLimiter limiter) {
+        Gauge.builder("phm.stage.limit", limiter, AdaptiveConcurrencyLimiter::getLimit).tag("stage", stage).register(registry);
+        Gauge.builder("phm.stage.in.flight", limiter, AdaptiveConcurrencyLimiter::getInFlight).tag("stage", stage).register(registry);
+        Gauge.builder("phm.stage.waiting", limiter, AdaptiveConcurrencyLimiter::getWaiting).tag("stage", stage).register(registry);
+    }
+
+    private Timer timer(String name, String... tags) {
+        return Timer.builder(name)
+            .tags(tags)
+            .publishPercentileHistogram()
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(registry);
+    }
+
+    private static double pendingSpills(TriggerSpillover spillover) {
+        try {
+            return spillover.pending();
+        } catch (IOException e) {
+            return Double.NaN;
+        }
+    }
+
+    private class TimedRoutePolicy extends RoutePolicySupport {
+
+        private final String startedAt;
+        private final Timer succeeded;
+        private final Timer failed;
+        private final Timer queueWait;
+
+        TimedRoutePolicy(String routeId) {
+            this.startedAt = "phmRouteStartedAt." + routeId;
+            this.succeeded = timer("phm.route", "route", routeId, "outcome", "success");
+            this.failed = timer("phm.route", "route", routeId, "outcome", "failure");
+            this.queueWait = timer("phm.seda.queue.wait", "route", routeId);
+        }
+
+        @Override
+        public void onExchangeBegin(Route route, Exchange exchange) {
+            long now = System.nanoTime();
+            exchange.setProperty(startedAt, now);
+            Long enqueuedAt = exchange.getIn().getHeader(ENQUEUED_AT, Long.class);
+            if (enqueuedAt != null) {
+                queueWait.record(now - enqueuedAt, TimeUnit.NANOSECONDS);
+                exchange.getIn().removeHeader(ENQUEUED_AT);
+            }
+        }
+
+        @Override
+        public void onExchangeDone(Route route, Exchange exchange) {
+            Object start = exchange.removeProperty(startedAt);
+            if (start instanceof Long) {
+                (exchange.isFailed() ? failed : succeeded).record(System.nanoTime() - (Long) start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
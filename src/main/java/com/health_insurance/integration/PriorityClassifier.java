@@ -0,0 +1,112 @@
+package com.health_insurance.integration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Predicate;
+import org.apache.camel.Processor;
+
+/**
+ * Sorts triggers into priority lanes. Lanes are checked highest first and a trigger goes to the first lane
+ * whose rule matches; the last lane takes every trigger no other rule matched.
+ *
+ * Each lane has its own bounded queue in the batched pipeline. The kie-server calls of the lanes of a stage
+ * share the stage's concurrency limit, whose permits go to the waiting lanes in proportion to their weight
+ * (see {@link AdaptiveConcurrencyLimiter}), so low lanes keep moving while high lanes are busy. The stage
+ * consumers are split the same way, only so that no lane hogs the consumer threads.
+ */
+public class PriorityClassifier implements Processor {
+
+    public static final String PRIORITY_HEADER = "phmPriority";
+
+    private final List<Lane> lanes;
+
+    public PriorityClassifier(List<Lane> lanes) {
+        if (lanes.isEmpty()) {
+            throw new IllegalArgumentException("at least one priority lane is needed");
+        }
+        for (int i = 0; i < lanes.size() - 1; i++) {
+            if (lanes.get(i).rule == null) {
+                throw new IllegalArgumentException("priority lane " + lanes.get(i).name + " has no rule, only the last lane can go without one");
+            }
+        }
+        this.lanes = Collections.unmodifiableList(new ArrayList<>(lanes));
+    }
+
+    @Override
+    public void process(Exchange exchange) {
+        exchange.getIn().setHeader(PRIORITY_HEADER, laneOf(exchange));
+    }
+
+    public String laneOf(Exchange exchange) {
+        for (int i = 0; i < lanes.size() - 1; i++) {
+            if (lanes.get(i).rule.matches(exchange)) {
+                return lanes.get(i).name;
+            }
+        }
+        return lanes.get(lanes.size() - 1).name;
+    }
+
+    public List<Lane> getLanes() {
+        return lanes;
+    }
+
+    /**
+     * @return the consumers of a stage given to the lane: one per lane, and the rest of the total shared by weight
+     *         (largest remainders first), so the lanes never get more than the total unless it is below one per lane
+     */
+    public int consumersOf(Lane lane, int totalConsumers) {
+        int spare = Math.max(0, totalConsumers - lanes.size());
+        int totalWeight = 0;
+        for (Lane l : lanes) {
+            totalWeight += l.weight;
+        }
+        int[] shares = new int[lanes.size()];
+        int given = 0;
+        for (int i = 0; i < lanes.size(); i++) {
+            shares[i] = spare * lanes.get(i).weight / totalWeight;
+            given += shares[i];
+        }
+        // hand out what the rounding down left, to the lanes that lost the most
+        List<Integer> byRemainder = new ArrayList<>();
+        for (int i = 0; i < lanes.size(); i++) {
+            byRemainder.add(i);
+        }
+        byRemainder.sort((a, b) -> Long.compare((long) spare * lanes.get(b).weight % totalWeight, (long) spare * lanes.get(a).weight % totalWeight));
+        for (int i = 0; given < spare; i++, given++) {
+            shares[byRemainder.get(i)]++;
+        }
+        return 1 + shares[lanes.indexOf(lane)];
+    }
+
+    public static class Lane {
+
+        private final String name;
+        private final Predicate rule;
+        private final int weight;
+
+        /**
+         * @param name lane name, used in the queue names and as the {@code priority} tag of the metrics
+         * @param rule triggers of the lane, null for the last lane
+         * @param weight share of the stage concurrency permits (and consumers)
+         */
+        public Lane(String name, Predicate rule, int weight) {
+            if (weight < 1) {
+                throw new IllegalArgumentException("priority lane " + name + " must have a weight of at least 1");
+            }
+            this.name = name;
+            this.rule = rule;
+            this.weight = weight;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+    }
+}
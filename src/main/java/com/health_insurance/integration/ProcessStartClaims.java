@@ -0,0 +1,42 @@
+package com.health_insurance.integration;
+
+import org.apache.camel.spi.IdempotentRepository;
+
+/**
+ * Claims on the process starts of the decision outcomes, shared by the process stage pods through a
+ * (Kafka backed) idempotent repository.
+ *
+ * An outcome is claimed before its process is started and released when the start fails or is spilled, so
+ * a redelivery is dropped while the start runs or once it went through, and retried after a failure.
+ * Claims live in time buckets of half the dedup window: a claim is seen in its own bucket and the next one,
+ * so it is remembered for at least half and at most a whole window, like the ingest dedup keys, and older
+ * claims are never read again (they age out of the repository).
+ * Outcomes are keyed by member, so a key is only consumed by the pod owning its partition: the claims of a pod
+ * are atomic, the other pods see them through the repository topic once the partition moves to them.
+ */
+class ProcessStartClaims {
+
+    private final IdempotentRepository<String> repository;
+    private final long bucketMillis;
+
+    ProcessStartClaims(IdempotentRepository<String> repository, long windowMillis) {
+        this.repository = repository;
+        this.bucketMillis = Math.max(1, windowMillis / 2);
+    }
+
+    /**
+     * @return the claim, to release if the start fails, or null when the outcome is already claimed
+     */
+    synchronized String claim(String key) {
+        long bucket = System.currentTimeMillis() / bucketMillis;
+        if (repository.contains(key + "@" + (bucket - 1))) {
+            return null;
+        }
+        String claim = key + "@" + bucket;
+        return repository.add(claim) ? claim : null;
+    }
+
+    synchronized void release(String claim) {
+        repository.remove(claim);
+    }
+}
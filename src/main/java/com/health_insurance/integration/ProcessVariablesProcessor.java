@@ -0,0 +1,106 @@
+package com.health_insurance.integration;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.health_insurance.kie.BusinessAutomationClient;
+import com.health_insurance.phm_model.Response;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Turns a decision result map into the variables of a new process instance.
+ *
+ * Only the {@link Response} facts are kept. When a list of fields is given, each response is shipped as a
+ * map of those fields only, so the process start payload does not carry what the process never reads.
+ * A failed decision is refused: no process is started without its decision.
+ */
+public class ProcessVariablesProcessor implements Processor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ProcessVariablesProcessor.class);
+
+    private final List<String> fields;
+    private final Map<Class<?>, Map<String, Method>> getters = new ConcurrentHashMap<>();
+
+    public ProcessVariablesProcessor() {
+        this(Collections.emptyList());
+    }
+
+    /**
+     * @param fields properties of the responses the process needs, empty to ship the responses as they are
+     */
+    public ProcessVariablesProcessor(List<String> fields) {
+        this.fields = fields;
+    }
+
+    @Override
+    public void process(Exchange e) throws Exception {
+        LOG.debug("Process request Body: {}", e.getIn().getBody());
+
+        // only the result facts are read, the rest of the decision result is never materialized
+        Map<?, ?> decisionResult = e.getIn().getBody(Map.class);
+        String decisionError = BusinessAutomationClient.decisionErrorOf(decisionResult);
+        if (decisionError != null) {
+            throw new IllegalStateException("no process for a failed decision: " + decisionError);
+        }
+        List<?> factsList = (List<?>) decisionResult.get("resultFactObjects");
+
+        List<Object> responsesList = new ArrayList<>(factsList == null ? 0 : factsList.size());
+        if (factsList != null) {
+            for (Object fact : factsList) {
+                if (fact instanceof Response) {
+                    responsesList.add(fields.isEmpty() ? fact : project(fact));
+                }
+            }
+        }
+
+        Map<String, Object> processVariables = new HashMap<>();
+        processVariables.put("pDataList", responsesList);
+
+        e.getIn().setBody(processVariables);
+    }
+
+    private Map<String, Object> project(Object fact) throws ReflectiveOperationException {
+        Map<String, Object> projection = new LinkedHashMap<>();
+        for (Map.Entry<String, Method> getter : gettersOf(fact.getClass()).entrySet()) {
+            projection.put(getter.getKey(), getter.getValue().invoke(fact));
+        }
+        return projection;
+    }
+
+    private Map<String, Method> gettersOf(Class<?> type) {
+        return getters.computeIfAbsent(type, t -> {
+            Map<String, Method> byName = new HashMap<>();
+            try {
+                for (PropertyDescriptor property : Introspector.getBeanInfo(t).getPropertyDescriptors()) {
+                    if (property.getReadMethod() != null) {
+                        byName.put(property.getName(), property.getReadMethod());
+                    }
+                }
+            } catch (IntrospectionException ex) {
+                throw new IllegalStateException("unable to read the properties of " + t.getName(), ex);
+            }
+            Map<String, Method> selected = new LinkedHashMap<>();
+            for (String field : fields) {
+                Method getter = byName.get(field);
+                if (getter == null) {
+                    throw new IllegalArgumentException(t.getSimpleName() + " has no property " + field);
+                }
+                selected.put(field, getter);
+            }
+            return selected;
+        });
+    }
+}
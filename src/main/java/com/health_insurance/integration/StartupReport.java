@@ -0,0 +1,73 @@
+package com.health_insurance.integration;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Startup time (JVM start to application ready) and resident memory of the service, logged once started and
+ * published as the {@code phm.startup.time} and {@code phm.process.resident.memory} gauges.
+ */
+@Component
+public class StartupReport implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StartupReport.class);
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+
+    @Autowired
+    MeterRegistry registry;
+
+    private volatile long startupMillis;
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        startupMillis = System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+        Runtime runtime = Runtime.getRuntime();
+        LOG.info("started in {}ms: resident memory {} MB, heap used {} MB of {} MB, {} classes loaded",
+            startupMillis, residentBytes() >> 20, (runtime.totalMemory() - runtime.freeMemory()) >> 20, runtime.totalMemory() >> 20,
+            ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+
+        TimeGauge.builder("phm.startup.time", this, TimeUnit.MILLISECONDS, r -> r.startupMillis)
+            .description("time from JVM start to application ready")
+            .register(registry);
+        Gauge.builder("phm.process.resident.memory", this, r -> residentBytes())
+            .description("resident set size of the JVM process")
+            .baseUnit("bytes")
+            .register(registry);
+    }
+
+    /**
+     * @return the resident set size of this process, read from /proc (Linux only), or -1 when not available
+     */
+    static long residentBytes() {
+        if (!Files.isReadable(PROC_STATUS)) {
+            return -1;
+        }
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS, StandardCharsets.UTF_8)) {
+                // VmRSS:	  123456 kB
+                if (line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim()) * 1024;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            LOG.debug("unable to read the resident memory: {}", e.getMessage());
+        }
+        return -1;
+    }
+}
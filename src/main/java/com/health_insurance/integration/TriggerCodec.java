@@ -0,0 +1,61 @@
+package com.health_insurance.integration;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.health_insurance.phm_model.Trigger;
+
+/**
+ * Shared {@link Trigger} JSON codec. The reader and writer are built once, with Afterburner generated
+ * accessors instead of reflection, and reused for every message. The wire format stays plain JSON,
+ * so producers outside this service (e.g. the JMeter plan) keep working.
+ */
+public final class TriggerCodec {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+        .registerModule(new AfterburnerModule())
+        .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final ObjectReader READER = MAPPER.readerFor(Trigger.class);
+    private static final ObjectWriter WRITER = MAPPER.writerFor(Trigger.class);
+    private static final ObjectReader LIST_READER = MAPPER.readerFor(new TypeReference<List<Trigger>>() { });
+    private static final ObjectWriter LIST_WRITER = MAPPER.writerFor(new TypeReference<List<Trigger>>() { });
+    private static final ObjectReader OUTCOME_READER = MAPPER.readerFor(DecisionOutcome.class);
+    private static final ObjectWriter OUTCOME_WRITER = MAPPER.writerFor(DecisionOutcome.class);
+
+    private TriggerCodec() {
+    }
+
+    public static byte[] encode(Trigger trigger) throws IOException {
+        return WRITER.writeValueAsBytes(trigger);
+    }
+
+    public static Trigger decode(byte[] data) throws IOException {
+        return READER.readValue(data);
+    }
+
+    public static Trigger decode(String data) throws IOException {
+        return READER.readValue(data);
+    }
+
+    public static byte[] encodeList(List<Trigger> triggers) throws IOException {
+        return LIST_WRITER.writeValueAsBytes(triggers);
+    }
+
+    public static List<Trigger> decodeList(byte[] data) throws IOException {
+        return LIST_READER.readValue(data);
+    }
+
+    public static byte[] encodeOutcome(DecisionOutcome outcome) throws IOException {
+        return OUTCOME_WRITER.writeValueAsBytes(outcome);
+    }
+
+    public static DecisionOutcome decodeOutcome(byte[] data) throws IOException {
+        return OUTCOME_READER.readValue(data);
+    }
+}
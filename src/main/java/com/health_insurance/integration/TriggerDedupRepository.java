@@ -0,0 +1,217 @@
+package com.health_insurance.integration;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.camel.spi.IdempotentRepository;
+import org.apache.camel.support.ServiceSupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Time windowed, memory bounded idempotent repository for the Kafka ingest.
+ * 
+ * Keys are reduced to a 64 bit hash and kept in two generations of primitive long sets. A new generation
+ * starts every half window (or earlier once it holds half of {@code kafka.dedup.max-entries}), and the
+ * oldest one is dropped, so a key is remembered for at least half and at most a whole window.
+ * 
+ * A key added by the consumer is only in flight: it rejects duplicates while its trigger is worked on, but
+ * it joins the generations once the trigger went through ({@link #processed(String)}) and is forgotten
+ * when the trigger is given up ({@link #remove(String)}), so a redelivery of an unfinished trigger is
+ * never dropped. A key neither processed nor removed within the window (its trigger was lost on the way)
+ * expires, and at most half of {@code kafka.dedup.max-entries} keys are in flight, the oldest go first.
+ * When a file is configured both generations are saved on stop and loaded back on start,
+ * keys still in flight are not.
+ */
+@Component("triggerDedupRepository")
+public class TriggerDedupRepository extends ServiceSupport implements IdempotentRepository<String> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TriggerDedupRepository.class);
+    private static final int FILE_VERSION = 1;
+
+    @Value("${kafka.dedup.window:600000}")
+    long windowMillis;
+    @Value("${kafka.dedup.max-entries:1000000}")
+    int maxEntries;
+    @Value("${kafka.dedup.file:}")
+    String file;
+
+    private LongHashSet current;
+    private LongHashSet previous;
+    // in flight keys by the time they were added, oldest first
+    private Map<Long, Long> inFlight;
+    private long currentStartedAt;
+    private long previousStartedAt;
+
+    @Override
+    protected synchronized void doStart() throws Exception {
+        current = new LongHashSet(generationCapacity());
+        previous = new LongHashSet(16);
+        inFlight = new LinkedHashMap<>();
+        currentStartedAt = System.currentTimeMillis();
+        previousStartedAt = currentStartedAt;
+        if (file != null && !file.isEmpty()) {
+            load(new File(file));
+        }
+    }
+
+    @Override
+    protected synchronized void doStop() throws Exception {
+        if (file != null && !file.isEmpty()) {
+            save(new File(file));
+        }
+    }
+
+    @Override
+    public synchronized boolean add(String key) {
+        rotateIfDue();
+        long hash = hash(key);
+        if (current.contains(hash) || previous.contains(hash) || inFlight.containsKey(hash)) {
+            return false;
+        }
+        inFlight.put(hash, System.currentTimeMillis());
+        return true;
+    }
+
+    /**
+     * The trigger of an in flight key went through: the key is remembered for the window
+     */
+    public synchronized void processed(String key) {
+        rotateIfDue();
+        long hash = hash(key);
+        if (inFlight.remove(hash) != null) {
+            current.add(hash);
+        }
+    }
+
+    @Override
+    public synchronized boolean contains(String key) {
+        rotateIfDue();
+        long hash = hash(key);
+        return current.contains(hash) || previous.contains(hash) || inFlight.containsKey(hash);
+    }
+
+    @Override
+    public synchronized boolean remove(String key) {
+        long hash = hash(key);
+        boolean removed = inFlight.remove(hash) != null;
+        removed = current.remove(hash) || removed;
+        return previous.remove(hash) || removed;
+    }
+
+    @Override
+    public boolean confirm(String key) {
+        return true;
+    }
+
+    @Override
+    public synchronized void clear() {
+        current.clear();
+        previous.clear();
+        inFlight.clear();
+    }
+
+    public synchronized int size() {
+        return current.size() + previous.size();
+    }
+
+    public synchronized int inFlightSize() {
+        expireInFlight(System.currentTimeMillis());
+        return inFlight.size();
+    }
+
+    private void rotateIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - currentStartedAt >= windowMillis / 2 || current.size() >= generationCapacity()) {
+            previous = current;
+            previousStartedAt = currentStartedAt;
+            current = new LongHashSet(generationCapacity());
+            currentStartedAt = now;
+        }
+        expireInFlight(now);
+    }
+
+    private void expireInFlight(long now) {
+        Iterator<Map.Entry<Long, Long>> oldest = inFlight.entrySet().iterator();
+        while (oldest.hasNext()) {
+            Map.Entry<Long, Long> entry = oldest.next();
+            if (now - entry.getValue() < windowMillis && inFlight.size() <= generationCapacity()) {
+                break;
+            }
+            LOG.debug("dedup key {} in flight for {}ms, forgotten", entry.getKey(), now - entry.getValue());
+            oldest.remove();
+        }
+    }
+
+    private int generationCapacity() {
+        return Math.max(16, maxEntries / 2);
+    }
+
+    private void save(File target) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target)))) {
+            out.writeInt(FILE_VERSION);
+            writeGeneration(out, previousStartedAt, previous);
+            writeGeneration(out, currentStartedAt, current);
+        }
+        LOG.info("saved {} dedup keys to {}", size(), target);
+    }
+
+    private void load(File source) throws IOException {
+        if (!source.isFile() || source.length() == 0) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(source)))) {
+            if (in.readInt() != FILE_VERSION) {
+                LOG.warn("ignoring dedup file {} written by another version", source);
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for (int generation = 0; generation < 2; generation++) {
+                long startedAt = in.readLong();
+                int count = in.readInt();
+                // only keys still inside the window are loaded back
+                boolean live = now - startedAt < windowMillis;
+                for (int i = 0; i < count; i++) {
+                    long hash = in.readLong();
+                    if (live) {
+                        current.add(hash);
+                    }
+                }
+            }
+        }
+        LOG.info("loaded {} dedup keys from {}", size(), source);
+    }
+
+    private static void writeGeneration(DataOutputStream out, long startedAt, LongHashSet keys) throws IOException {
+        long[] values = keys.toArray();
+        out.writeLong(startedAt);
+        out.writeInt(values.length);
+        for (long value : values) {
+            out.writeLong(value);
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a of the key; collisions are negligible for the volumes kept in the window
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,40 @@
+package com.health_insurance.integration;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.health_insurance.phm_model.Trigger;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Kafka value deserializer for {@link Trigger},
+ * a record that cannot be read is logged and comes out as {@code null} so the consumer skips it
+ */
+public class TriggerDeserializer implements Deserializer<Trigger> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TriggerDeserializer.class);
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+    }
+
+    @Override
+    public Trigger deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return TriggerCodec.decode(data);
+        } catch (IOException e) {
+            LOG.warn("skipping a record of topic {} that is not a valid trigger: {}", topic, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,41 @@
+package com.health_insurance.integration;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import com.health_insurance.phm_model.Trigger;
+
+import org.apache.kafka.common.serialization.Deserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Kafka value deserializer for the coalesced {@link Trigger} lists (a JSON array of triggers),
+ * a record that cannot be read is logged and comes out as {@code null} so the consumer skips it
+ */
+public class TriggerListDeserializer implements Deserializer<List<Trigger>> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TriggerListDeserializer.class);
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+    }
+
+    @Override
+    public List<Trigger> deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return TriggerCodec.decodeList(data);
+        } catch (IOException e) {
+            LOG.warn("skipping a record of topic {} that is not a valid trigger list: {}", topic, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,36 @@
+package com.health_insurance.integration;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import com.health_insurance.phm_model.Trigger;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Kafka value serializer for the coalesced {@link Trigger} lists (a JSON array of triggers)
+ */
+public class TriggerListSerializer implements Serializer<List<Trigger>> {
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+    }
+
+    @Override
+    public byte[] serialize(String topic, List<Trigger> triggers) {
+        if (triggers == null) {
+            return null;
+        }
+        try {
+            return TriggerCodec.encodeList(triggers);
+        } catch (IOException e) {
+            throw new SerializationException("Unable to serialize " + triggers.size() + " triggers", e);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
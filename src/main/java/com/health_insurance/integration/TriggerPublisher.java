@@ -0,0 +1,98 @@
+package com.health_insurance.integration;
+
+import java.util.Properties;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.health_insurance.phm_model.Trigger;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Asynchronous, batching Kafka producer for high volume trigger ingest.
+ * {@link #send} only enqueues the record; the outcome is reported to the callback.
+ * 
+ * Also holds the producer profile ({@code kafka.producer.*}) shared with the Camel Kafka producer endpoints.
+ */
+@Component
+public class TriggerPublisher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TriggerPublisher.class);
+
+    @Value("${kafka.topic:test}") 
+    String kafkaTopic;
+    @Value("${kafka.host:localhost}") 
+    String kafkaHost;
+    @Value("${kafka.port:9092}") 
+    String kafkaPort;
+
+    @Value("${kafka.producer.linger-ms:20}")
+    int lingerMs;
+    @Value("${kafka.producer.batch-size:65536}")
+    int batchSize;
+    @Value("${kafka.producer.compression:lz4}")
+    String compression;
+    @Value("${kafka.producer.acks:1}")
+    String acks;
+    // requires acks=all
+    @Value("${kafka.producer.idempotence:false}")
+    boolean idempotence;
+    @Value("${kafka.producer.max-in-flight:5}")
+    int maxInFlight;
+
+    private KafkaProducer<String, Trigger> producer;
+
+    @PostConstruct
+    public void initialize() {
+        Properties config = new Properties();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaHost + ":" + kafkaPort);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, TriggerSerializer.class.getName());
+        config.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+        config.put(ProducerConfig.ACKS_CONFIG, acks);
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, idempotence);
+        config.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, maxInFlight);
+        producer = new KafkaProducer<>(config);
+        LOG.info("\t trigger publisher: linger={}ms, batch size={}, compression={}, acks={}, idempotence={}, max in-flight={}",
+            lingerMs, batchSize, compression, acks, idempotence, maxInFlight);
+    }
+
+    /**
+     * @return the producer profile as Camel Kafka endpoint options
+     */
+    public String camelProducerOptions() {
+        String options = String.format("lingerMs=%s&producerBatchSize=%s&compressionCodec=%s&requestRequiredAcks=%s&maxInFlightRequest=%s",
+            lingerMs, batchSize, compression, acks, maxInFlight);
+        return idempotence ? options + "&enableIdempotence=true" : options;
+    }
+
+    /**
+     * Enqueue a trigger, keyed by member, for an asynchronous send
+     */
+    public void send(Trigger trigger, Callback callback) {
+        producer.send(new ProducerRecord<>(kafkaTopic, trigger.getMemberId(), trigger), callback);
+    }
+
+    /**
+     * Block until every record enqueued so far has been acknowledged or failed
+     */
+    public void flush() {
+        producer.flush();
+    }
+
+    @PreDestroy
+    public void closeResources() {
+        producer.close();
+    }
+}
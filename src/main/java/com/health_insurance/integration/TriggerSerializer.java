@@ -0,0 +1,35 @@
+package com.health_insurance.integration;
+
+import java.io.IOException;
+import java.util.Map;
+
+import com.health_insurance.phm_model.Trigger;
+
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Kafka value serializer for {@link Trigger}
+ */
+public class TriggerSerializer implements Serializer<Trigger> {
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+    }
+
+    @Override
+    public byte[] serialize(String topic, Trigger trigger) {
+        if (trigger == null) {
+            return null;
+        }
+        try {
+            return TriggerCodec.encode(trigger);
+        } catch (IOException e) {
+            throw new SerializationException("Unable to serialize trigger " + trigger.getTriggerId(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,239 @@
+package com.health_insurance.integration;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.health_insurance.phm_model.Trigger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local append-only store for the triggers that could not be sent to the kie-server because its circuit
+ * breaker was open (or its bulkhead full). Triggers are written one JSON per line and synced to disk on every
+ * write, so a spilled trigger survives a restart and its Kafka offset can be committed. That only holds on a
+ * persistent volume: the store is off unless enabled, and then needs an explicit {@code kie.spillover.file}.
+ *
+ * On replay the file is moved aside first, so triggers spilled again while replaying land in a new file.
+ * The moved file is kept until every replayed trigger is done with ({@link #replayCompleted()}), a replay
+ * cut short by a crash is replayed again on the next start.
+ */
+@Component
+public class TriggerSpillover {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TriggerSpillover.class);
+
+    @Value("${kie.spillover.enabled:false}")
+    boolean enabled;
+    @Value("${kie.spillover.file:}")
+    String file;
+
+    private FileOutputStream output;
+    private BufferedWriter writer;
+    private long pending = -1;
+    private long spilledCount;
+    private long replayedCount;
+    // replayed triggers not done yet, and whether the whole replay file was handed over
+    private long replaying;
+    private boolean handedOver;
+    // a replayed trigger could not be spilled again: keep the replay file for the next replay
+    private boolean keepReplay;
+
+    @PostConstruct
+    public void initialize() {
+        if (enabled && (file == null || file.trim().isEmpty())) {
+            throw new IllegalStateException("kie.spillover.file must be set (on a persistent volume) when kie.spillover.enabled");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void spill(Trigger trigger) throws IOException {
+        if (writer == null) {
+            pending();
+            output = new FileOutputStream(file, true);
+            writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        }
+        writer.write(new String(TriggerCodec.encode(trigger), StandardCharsets.UTF_8));
+        writer.newLine();
+        writer.flush();
+        output.getFD().sync();
+        pending++;
+        spilledCount++;
+        LOG.warn("trigger {} of member {} spilled to {}", trigger.getTriggerId(), trigger.getMemberId(), file);
+    }
+
+    /**
+     * Number of spilled triggers waiting to be replayed
+     */
+    public synchronized long pending() throws IOException {
+        if (!enabled) {
+            return 0;
+        }
+        if (pending < 0) {
+            // first use: count what a previous run left behind
+            pending = countLines(path()) + countLines(replayPath());
+        }
+        return pending;
+    }
+
+    private static long countLines(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        try (Stream<String> lines = Files.lines(path, StandardCharsets.UTF_8)) {
+            return lines.filter(l -> !l.trim().isEmpty()).count();
+        }
+    }
+
+    /**
+     * Hand every spilled trigger to the given consumer, oldest first. They are dropped from the store once
+     * each of them is reported done with {@link #replayCompleted()}; until then no other replay starts.
+     * Lines that can not be decoded are logged and skipped.
+     *
+     * @return number of replayed triggers
+     */
+    public long replay(Consumer<Trigger> consumer) throws IOException {
+        Path replayFile;
+        synchronized (this) {
+            if (replaying > 0 || pending() == 0) {
+                return 0;
+            }
+            closeWriter();
+            handedOver = false;
+            replayFile = replayPath();
+            // a replay interrupted by a crash is picked up again before the newer spills
+            if (!Files.exists(replayFile)) {
+                Files.move(path(), replayFile, StandardCopyOption.ATOMIC_MOVE);
+            } else if (Files.exists(path())) {
+                Files.write(replayFile, Files.readAllBytes(path()), StandardOpenOption.APPEND);
+                Files.delete(path());
+            }
+            pending = 0;
+        }
+
+        long replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                Trigger trigger;
+                try {
+                    trigger = TriggerCodec.decode(line);
+                } catch (IOException e) {
+                    LOG.error("skipping unreadable spilled trigger [{}]: {}", line, e.getMessage());
+                    continue;
+                }
+                synchronized (this) {
+                    replaying++;
+                }
+                try {
+                    consumer.accept(trigger);
+                } catch (RuntimeException e) {
+                    // the replay file stays, the whole of it is replayed again once the handed triggers are done
+                    synchronized (this) {
+                        pending = -1;
+                    }
+                    replayCompleted();
+                    throw e;
+                }
+                replayed++;
+            }
+        }
+        synchronized (this) {
+            replayedCount += replayed;
+            handedOver = true;
+            dropReplayIfDone();
+        }
+        LOG.info("{} spilled triggers replayed from {}", replayed, file);
+        return replayed;
+    }
+
+    /**
+     * A replayed trigger is done with (processed, given up or spilled again)
+     */
+    public synchronized void replayCompleted() {
+        if (replaying > 0) {
+            replaying--;
+        }
+        dropReplayIfDone();
+    }
+
+    /**
+     * A replayed trigger failed and could not be spilled again: the replay file is kept and replayed
+     * again, whole, once the other replayed triggers are done with
+     */
+    public synchronized void replayFailed() {
+        keepReplay = true;
+        pending = -1;
+        replayCompleted();
+    }
+
+    private void dropReplayIfDone() {
+        if (handedOver && replaying == 0) {
+            handedOver = false;
+            if (keepReplay) {
+                keepReplay = false;
+                return;
+            }
+            try {
+                Files.deleteIfExists(replayPath());
+            } catch (IOException e) {
+                LOG.warn("unable to delete the replayed spill file {}: {}", replayPath(), e.getMessage());
+            }
+        }
+    }
+
+    public synchronized Map<String, Object> getStats() throws IOException {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("file", file);
+        stats.put("pending", pending());
+        stats.put("spilled", spilledCount);
+        stats.put("replayed", replayedCount);
+        stats.put("replaying", replaying);
+        return stats;
+    }
+
+    private Path path() {
+        return Paths.get(file);
+    }
+
+    private Path replayPath() {
+        return Paths.get(file + ".replay");
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+            output = null;
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        closeWriter();
+    }
+}
@@ -1,60 +1,100 @@
 package com.health_insurance.kie;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 
-import com.health_insurance.phm_model.Reminder;
-import com.health_insurance.phm_model.Response;
-import com.health_insurance.phm_model.Result;
-import com.health_insurance.phm_model.Task;
-import com.health_insurance.phm_model.TaskActorAssignment;
-import com.health_insurance.phm_model.Trigger;
+import com.health_insurance.kie.KieCallGuard.Operation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 import org.kie.api.KieServices;
 import org.kie.api.command.BatchExecutionCommand;
 import org.kie.api.command.Command;
 import org.kie.api.command.KieCommands;
+import org.drools.core.runtime.impl.ExecutionResultImpl;
+import org.kie.api.runtime.ClassObjectFilter;
 import org.kie.api.runtime.ExecutionResults;
-import org.kie.server.api.marshalling.MarshallingFormat;
+import org.kie.server.api.commands.CallContainerCommand;
+import org.kie.server.api.commands.CommandScript;
+import org.kie.server.api.commands.DescriptorCommand;
+import org.kie.server.api.marshalling.Marshaller;
 import org.kie.server.api.model.KieContainerResource;
 import org.kie.server.api.model.KieContainerResourceList;
+import org.kie.server.api.model.KieServerCommand;
 import org.kie.server.api.model.KieServerInfo;
 import org.kie.server.api.model.ServiceResponse;
+import org.kie.server.api.model.ServiceResponsesList;
 import org.kie.server.api.model.definition.ProcessDefinition;
 import org.kie.server.api.model.KieServiceResponse; 
-import org.kie.server.client.KieServicesClient;
-import org.kie.server.client.KieServicesConfiguration;
-import org.kie.server.client.KieServicesFactory;
 import org.kie.server.client.ProcessServicesClient;
 import org.kie.server.client.QueryServicesClient;
 import org.kie.server.client.RuleServicesClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service("businessAutomationServiceClient")
 public class BusinessAutomationClient {
   private static final Logger LOG = LoggerFactory.getLogger(BusinessAutomationClient.class);
+  // key of the result of a decision the kie-server failed to make, holding its error message
+  public static final String DECISION_ERROR = "decisionError";
+
+  @Value("${kie.client.async.enabled:true}")
+  boolean asyncEnabled;
+  @Value("${kie.client.async.max-in-flight:200}")
+  int maxInFlight;
+  // only facts of this class are sent back by the rules session, empty means every fact in the session
+  @Value("${kie.decision.result.class:com.health_insurance.phm_model.Response}")
+  String resultClassName;
+
+  // package visible for the benchmarks
+  Class<?> resultClass;
+  // blocking: the startup fails when the kie-server does not answer; background: start right away and
+  // retry every <retry-interval> ms, the client being reported not ready until the kie-server answers
+  @Value("${kie.client.init.mode:blocking}")
+  String initMode;
+  @Value("${kie.client.init.retry-interval:5000}")
+  long initRetryInterval;
 
-  @Value("${kie.server.url:http://localhost:8080/kie-server/services/rest/server}")
-  String kieServerUrl;
-  @Value("${kie.server.user:kieAdmin}")
-  String kieServerUser;
-  @Value("${kie.server.password}")
-  String kieServerPassword;
+  @Autowired
+  KieServerTransport transport;
+  @Autowired
+  KieCallGuard guard;
+  @Autowired
+  MeterRegistry meterRegistry;
 
-  private static final MarshallingFormat FORMAT = MarshallingFormat.JSON;
-  private static KieServicesConfiguration conf;
-  private static KieServicesClient kieServicesClient;
+  // only present when kie.decision.mode=embedded
+  @Autowired(required = false)
+  EmbeddedDecisionEngine embeddedEngine;
+  // only present when kie.decision.cache.enabled=true
+  @Autowired(required = false)
+  DecisionResultCache decisionCache;
+
+  private ExecutorService asyncExecutor;
+  private Semaphore inFlightPermits;
+  // phm.kie.client timers by method and outcome, built once
+  private final Map<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+  private volatile boolean ready;
+  private Thread initThread;
 
   public BusinessAutomationClient() {
   }
@@ -62,51 +102,93 @@ public class BusinessAutomationClient {
   @PostConstruct
   public void initialize() {
     LOG.info("\n=== Initializing Kie Client ===\n");
-    LOG.info("\t connecting to {}", kieServerUrl);
-    conf = KieServicesFactory.newRestConfiguration(kieServerUrl, kieServerUser, kieServerPassword);
-
-    // If you use custom classes, such as Obj.class, add them to the configuration.
-    Set<Class<?>> extraClassList = new HashSet<Class<?>>();
+    LOG.info("\t connecting to {}", transport.kieServerUrl);
 
-    //TODO: encapsulate this and expose to the callers
-    extraClassList.add(Task.class);
-    extraClassList.add(Reminder.class);
-    extraClassList.add(Result.class);
-    extraClassList.add(TaskActorAssignment.class);
-    extraClassList.add(Trigger.class);
-    extraClassList.add(Response.class);
-    conf.addExtraClasses(extraClassList);
+    if (asyncEnabled) {
+      LOG.info("\t async calls enabled (max in-flight {})", maxInFlight);
+      inFlightPermits = new Semaphore(maxInFlight);
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(maxInFlight, maxInFlight, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), new KieThreadFactory());
+      executor.allowCoreThreadTimeOut(true);
+      asyncExecutor = executor;
+    }
 
-    conf.setMarshallingFormat(FORMAT);
-    kieServicesClient = KieServicesFactory.newKieServicesClient(conf);
+    if (resultClassName != null && !resultClassName.trim().isEmpty()) {
+      try {
+        resultClass = Class.forName(resultClassName.trim());
+        LOG.info("\t decision results limited to {} facts", resultClass.getSimpleName());
+      } catch (ClassNotFoundException e) {
+        throw new IllegalArgumentException("kie.decision.result.class " + resultClassName + " not found", e);
+      }
+    }
 
-    listCapabilities();
+    if (embeddedEngine != null) {
+      // decisions run in-process, there is no kie-server to wait for
+      LOG.info("\t embedded decision engine, kie-server capabilities not checked");
+      ready = true;
+    } else if ("background".equals(initMode)) {
+      LOG.info("\t connecting to the kie-server in the background");
+      initThread = new Thread(this::connect, "kie-client-init");
+      initThread.setDaemon(true);
+      initThread.start();
+    } else {
+      listCapabilities();
+      ready = true;
+    }
 
     LOG.info("=== Kie Client initialization done ===\n");
   }
 
+  /**
+   * @return true once the kie-server answered, the pipeline consumers are held back until then
+   */
+  public boolean isReady() {
+    return ready;
+  }
+
+  private void connect() {
+    long start = System.nanoTime();
+    while (!ready) {
+      try {
+        listCapabilities();
+        ready = true;
+        LOG.info("kie-server ready after {}ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      } catch (RuntimeException e) {
+        LOG.warn("kie-server not reachable yet ({}), retrying in {}ms", e.getMessage(), initRetryInterval);
+        try {
+          Thread.sleep(initRetryInterval);
+        } catch (InterruptedException ie) {
+          return;
+        }
+      }
+    }
+  }
+
   public List<String> listCapabilities() {
-    KieServerInfo serverInfo = kieServicesClient.getServerInfo().getResult();
+    KieServerInfo serverInfo = remote("listCapabilities", Operation.ADMIN, () -> transport.getKieServicesClient().getServerInfo()).getResult();
     LOG.info("Kie Server capabilities:");
     serverInfo.getCapabilities().forEach(c -> LOG.info("\t" + c));
     return serverInfo.getCapabilities();
   }
 
   public List<KieContainerResource> listContainers() {
-    KieContainerResourceList containersList = kieServicesClient.listContainers().getResult();
+    KieContainerResourceList containersList = remote("listContainers", Operation.ADMIN, () -> transport.getKieServicesClient().listContainers()).getResult();
     List<KieContainerResource> kieContainers = containersList.getContainers();
     LOG.info("Available containers: ");
     kieContainers.forEach(container ->
       LOG.info("\t" + container.getContainerId() + " (" + container.getReleaseId() + ")")
     );
+    if (decisionCache != null) {
+      decisionCache.updateReleases(kieContainers);
+    }
 
     return kieContainers;
   }
 
   public List<ProcessDefinition> listProcesses() {
     LOG.info("== Listing Business Processes ==");
-    QueryServicesClient queryClient = kieServicesClient.getServicesClient(QueryServicesClient.class);
-    List<ProcessDefinition> processDefinitions = queryClient.findProcessesByContainerId("rewards", 0, 1000);
+    QueryServicesClient queryClient = transport.getQueryServicesClient();
+    List<ProcessDefinition> processDefinitions = remote("listProcesses", Operation.ADMIN, () -> queryClient.findProcessesByContainerId("rewards", 0, 1000));
     LOG.info("Available process: ");
     processDefinitions.forEach(def -> 
       LOG.info(def.getName() + " - " + def.getId() + " v" + def.getVersion())
@@ -124,46 +206,202 @@ public class BusinessAutomationClient {
    * @return resultFacts map of returned facts and its respective ids
    */
   public Map<String ,Object> executeCommands(String containerId, String sessionName, HashMap<String, Object> facts) {
+    if (decisionCache == null) {
+      return doExecuteCommands(containerId, sessionName, facts);
+    }
+
+    String cacheKey = cacheKeyOf(containerId, facts);
+    Map<String, Object> resultFacts = decisionCache.get(cacheKey, facts);
+    if (resultFacts == null) {
+      resultFacts = doExecuteCommands(containerId, sessionName, facts);
+      if (decisionErrorOf(resultFacts) == null) {
+        decisionCache.put(cacheKey, resultFacts);
+      }
+    } else {
+      LOG.info("\t decision for " + facts.keySet() + " served from cache");
+    }
+    return resultFacts;
+  }
+
+  private Map<String ,Object> doExecuteCommands(String containerId, String sessionName, Map<String, Object> facts) {
     Map<String, Object> resultFacts = new HashMap<String, Object>();
 
     LOG.info("== Sending commands to the kie-server [" + containerId + "] ==");
     LOG.info("\t feeding session [" + sessionName + "] up with the following input facts: ");
     LOG.info("\t\t" + facts);
-    RuleServicesClient rulesClient = kieServicesClient.getServicesClient(RuleServicesClient.class);
+    BatchExecutionCommand batchCommand = newBatchCommand(sessionName, facts);
+
+    if (embeddedEngine != null) {
+      resultFacts = toResultFacts(timed("executeCommands", () -> embeddedEngine.execute(sessionName, batchCommand)));
+      LOG.debug("\t{}", resultFacts);
+      return resultFacts;
+    }
+
+    RuleServicesClient rulesClient = transport.getRuleServicesClient();
+    ServiceResponse<ExecutionResults> executeResponse = 
+      remote("executeCommands", Operation.DECISION, () -> rulesClient.executeCommandsWithResults(containerId, batchCommand));
+  
+    if(executeResponse.getType() == KieServiceResponse.ResponseType.SUCCESS) {
+      LOG.info("Commands executed with success! Response: ");
+      resultFacts = toResultFacts(executeResponse.getResult());
+      LOG.debug("\t{}", resultFacts);
+    } else {
+      LOG.info("Error executing rules. Message: ");
+      LOG.info(executeResponse.getMsg());
+      resultFacts = failedDecision(executeResponse.getMsg());
+    }
+
+    return resultFacts;
+  }
+
+  /**
+   * Execute several independent batch commands on a remote kie-server using a single request.
+   * Each fact set is sent as its own container call inside one {@link CommandScript}, so every
+   * set still gets a fresh stateless session and its results never mix with the other sets.
+   * 
+   * @param containerId
+   * @param sessionName
+   * @param factSets list of fact maps, one per decision (same contract as {@link #executeCommands})
+   * @return list of result fact maps, in the same order as the given fact sets
+   */
+  public List<Map<String, Object>> executeBatch(String containerId, String sessionName, List<Map<String, Object>> factSets) {
+    if (decisionCache == null) {
+      return doExecuteBatch(containerId, sessionName, factSets);
+    }
+
+    // serve what we can from the cache and send only the misses
+    List<Map<String, Object>> results = new ArrayList<Map<String, Object>>(factSets.size());
+    List<String> missKeys = new ArrayList<String>();
+    List<Integer> missIndexes = new ArrayList<Integer>();
+    List<Map<String, Object>> misses = new ArrayList<Map<String, Object>>();
+    for (Map<String, Object> facts : factSets) {
+      String cacheKey = cacheKeyOf(containerId, facts);
+      Map<String, Object> cached = decisionCache.get(cacheKey, facts);
+      if (cached == null) {
+        missKeys.add(cacheKey);
+        missIndexes.add(results.size());
+        misses.add(facts);
+      }
+      results.add(cached);
+    }
+    LOG.info("\t " + (factSets.size() - misses.size()) + " of " + factSets.size() + " decisions served from cache");
+
+    if (!misses.isEmpty()) {
+      List<Map<String, Object>> computed = doExecuteBatch(containerId, sessionName, misses);
+      for (int i = 0; i < computed.size(); i++) {
+        if (decisionErrorOf(computed.get(i)) == null) {
+          decisionCache.put(missKeys.get(i), computed.get(i));
+        }
+        results.set(missIndexes.get(i), computed.get(i));
+      }
+    }
+    return results;
+  }
+
+  private List<Map<String, Object>> doExecuteBatch(String containerId, String sessionName, List<Map<String, Object>> factSets) {
+    List<Map<String, Object>> results = new ArrayList<Map<String, Object>>(factSets.size());
+
+    if (embeddedEngine != null) {
+      LOG.info("== Executing a batch of " + factSets.size() + " command sets in-process ==");
+      timed("executeBatch", () -> {
+        factSets.forEach(
+          facts -> results.add(toResultFacts(embeddedEngine.execute(sessionName, newBatchCommand(sessionName, facts))))
+        );
+        return results;
+      });
+      return results;
+    }
+
+    LOG.info("== Sending a batch of " + factSets.size() + " command sets to the kie-server [" + containerId + "] ==");
+    List<KieServerCommand> containerCalls = new ArrayList<KieServerCommand>(factSets.size());
+    factSets.forEach(
+      facts -> containerCalls.add(new CallContainerCommand(containerId, transport.getMarshaller().marshall(newBatchCommand(sessionName, facts))))
+    );
+
+    ServiceResponsesList responses = remote("executeBatch", Operation.DECISION,
+      () -> transport.getKieServicesClient().executeScript(new CommandScript(containerCalls)));
+
+    for (ServiceResponse<?> response : responses.getResponses()) {
+      if(response.getType() == KieServiceResponse.ResponseType.SUCCESS) {
+        results.add(toResultFacts(toExecutionResults(response.getResult())));
+      } else {
+        LOG.info("Error executing rules. Message: ");
+        LOG.info(response.getMsg());
+        results.add(failedDecision(response.getMsg()));
+      }
+    }
+    LOG.info("\t" + results.size() + " result sets returned");
+    // a short response list must not leave the last fact sets without a decision
+    while (results.size() < factSets.size()) {
+      results.add(failedDecision("no response for this decision"));
+    }
+
+    return results;
+  }
+
+  /**
+   * @return the error of a decision the kie-server failed to make, null when the rules ran
+   */
+  public static String decisionErrorOf(Map<?, ?> resultFacts) {
+    if (resultFacts == null) {
+      return "no decision result";
+    }
+    Object error = resultFacts.get(DECISION_ERROR);
+    return error == null ? null : error.toString();
+  }
+
+  /**
+   * Result of a decision the kie-server failed to make: never cached, and no process is started for it
+   */
+  private static Map<String, Object> failedDecision(String message) {
+    Map<String, Object> result = new HashMap<String, Object>();
+    result.put(DECISION_ERROR, message == null ? "decision failed" : message);
+    return result;
+  }
+
+  private String cacheKeyOf(String containerId, Map<String, Object> facts) {
+    if (embeddedEngine != null) {
+      decisionCache.updateRelease(containerId, String.valueOf(embeddedEngine.getReleaseId()));
+    }
+    return decisionCache.keyOf(containerId, facts);
+  }
+
+  // package visible for the benchmarks
+  BatchExecutionCommand newBatchCommand(String sessionName, Map<String, Object> facts) {
     KieCommands commandsFactory = KieServices.Factory.get().getCommands();
   
     // Get PriorApplications from the DB
     List<Command> kieCommands = new ArrayList<Command>();
+    // the caller already holds the inserted facts: keep the handles, do not send the objects back
     facts.forEach(
-      (k, o) -> kieCommands.add(commandsFactory.newInsert(o, "isertedFactObject_" + k))
+      (k, o) -> kieCommands.add(commandsFactory.newInsert(o, "isertedFactObject_" + k, false, null))
     );
 
     BatchExecutionCommand batchCommand = commandsFactory.newBatchExecution(kieCommands, sessionName);
 
     Command<?> fireAllRules = commandsFactory.newFireAllRules("firedRules");
     kieCommands.add(fireAllRules);
-    Command<?> getObjects = commandsFactory.newGetObjects("resultFactObjects");
+    // typed filter, evaluated in the session: only the result facts are marshalled back
+    Command<?> getObjects = resultClass == null
+      ? commandsFactory.newGetObjects("resultFactObjects")
+      : commandsFactory.newGetObjects(new ClassObjectFilter(resultClass), "resultFactObjects");
     kieCommands.add(getObjects);
 
-    ServiceResponse<ExecutionResults> executeResponse = 
-      rulesClient.executeCommandsWithResults(containerId, batchCommand);
-  
-    if(executeResponse.getType() == KieServiceResponse.ResponseType.SUCCESS) {
-      LOG.info("Commands executed with success! Response: ");
-
-      Collection<String> resultFactsIds = executeResponse.getResult().getIdentifiers();
-      LOG.info("\n\tFacts Returned: " + resultFactsIds);
-      resultFactsIds.forEach(
-        id -> resultFacts.put(id, executeResponse.getResult().getValue(id))
-      );
+    return batchCommand;
+  }
 
-      LOG.info("\t" + resultFacts);
-    } else {
-      LOG.info("Error executing rules. Message: ");
-      LOG.info(executeResponse.getMsg());
+  private ExecutionResults toExecutionResults(Object result) {
+    if (result instanceof ExecutionResults) {
+      return (ExecutionResults) result;
     }
+    // container calls return the execution results marshalled as a string
+    return transport.getMarshaller().unmarshall((String) result, ExecutionResultImpl.class);
+  }
 
-    return resultFacts;
+  private Map<String, Object> toResultFacts(ExecutionResults executionResults) {
+    LOG.debug("\n\tFacts Returned: {}", executionResults.getIdentifiers());
+    // values are read from the execution results when asked for
+    return new ExecutionResultsMap(executionResults);
   }
 
   /**
@@ -176,18 +414,174 @@ public class BusinessAutomationClient {
    */
   public Long startProcess(String containerId, String processDefinitionId, Map<String, Object> variables) {
     LOG.info("== Sending commands to the kie-server [" + containerId + "] ==");
-    ProcessServicesClient processClient = kieServicesClient.getServicesClient(ProcessServicesClient.class);
+    ProcessServicesClient processClient = transport.getProcessServicesClient();
 
     LOG.info("\t Starting process [" + processDefinitionId + "] with the following input variables: ");
     LOG.info("\t\t" + variables);
     
-    Long processInstanceID = processClient.startProcess(containerId, processDefinitionId, variables);
+    Long processInstanceID = remote("startProcess", Operation.PROCESS, () -> processClient.startProcess(containerId, processDefinitionId, variables));
     return processInstanceID;
   }
 
+  /**
+   * Start one process instance per variables map using a single request: each start is a
+   * {@code ProcessService.startProcess} descriptor command of one {@link CommandScript}, the same
+   * script endpoint as {@link #executeBatch}.
+   * A failed start is reported in its own {@link ProcessStartResult} and never fails the whole batch;
+   * when the request itself fails, every item carries that failure.
+   * 
+   * @param containerId kie container Id
+   * @param processDefinitionId process definition Id
+   * @param variablesList list of process input variables, one per process instance
+   * @return per item results, in the same order as the given variables
+   */
+  public List<ProcessStartResult> startProcesses(String containerId, String processDefinitionId, List<Map<String, Object>> variablesList) {
+    LOG.info("== Starting " + variablesList.size() + " instances of process [" + processDefinitionId + "] ==");
+    Marshaller marshaller = transport.getMarshaller();
+    List<KieServerCommand> starts = new ArrayList<KieServerCommand>(variablesList.size());
+    variablesList.forEach(
+      variables -> starts.add(new DescriptorCommand("ProcessService", "startProcess", marshaller.marshall(variables),
+        marshaller.getFormat().getType(), containerId, processDefinitionId))
+    );
+
+    List<ProcessStartResult> results = new ArrayList<ProcessStartResult>(variablesList.size());
+    ServiceResponsesList responses;
+    try {
+      responses = remote("startProcesses", Operation.PROCESS,
+        () -> transport.getKieServicesClient().executeScript(new CommandScript(starts)));
+    } catch (RuntimeException e) {
+      variablesList.forEach(variables -> results.add(ProcessStartResult.failed(e)));
+      return results;
+    }
+
+    for (ServiceResponse<?> response : responses.getResponses()) {
+      if (response.getType() == KieServiceResponse.ResponseType.SUCCESS) {
+        results.add(ProcessStartResult.started(toProcessInstanceId(response.getResult())));
+      } else {
+        results.add(ProcessStartResult.failed(new IllegalStateException(response.getMsg())));
+      }
+    }
+    // a short response list must not leave the last items unaccounted for
+    while (results.size() < variablesList.size()) {
+      results.add(ProcessStartResult.failed(new IllegalStateException("no response for this process start")));
+    }
+    return results;
+  }
+
+  private Long toProcessInstanceId(Object result) {
+    if (result instanceof Number) {
+      return ((Number) result).longValue();
+    }
+    // descriptor commands return their result marshalled as a string
+    return ((Number) transport.getMarshaller().unmarshall((String) result, Object.class)).longValue();
+  }
+
+  /**
+   * Async variant of {@link #executeCommands}
+   */
+  public CompletableFuture<Map<String, Object>> executeCommandsAsync(String containerId, String sessionName, HashMap<String, Object> facts) {
+    return submit(() -> executeCommands(containerId, sessionName, facts));
+  }
+
+  /**
+   * Async variant of {@link #executeBatch}
+   */
+  public CompletableFuture<List<Map<String, Object>>> executeBatchAsync(String containerId, String sessionName, List<Map<String, Object>> factSets) {
+    return submit(() -> executeBatch(containerId, sessionName, factSets));
+  }
+
+  /**
+   * Async variant of {@link #startProcesses}
+   */
+  public CompletableFuture<List<ProcessStartResult>> startProcessesAsync(String containerId, String processDefinitionId, List<Map<String, Object>> variablesList) {
+    return submit(() -> startProcesses(containerId, processDefinitionId, variablesList));
+  }
+
+  /**
+   * Async variant of {@link #startProcess}
+   */
+  public CompletableFuture<Long> startProcessAsync(String containerId, String processDefinitionId, Map<String, Object> variables) {
+    return submit(() -> startProcess(containerId, processDefinitionId, variables));
+  }
+
+  /**
+   * Send a kie-server request through the operation's breaker and bulkhead, on a pooled connection
+   */
+  private <T> T remote(String method, Operation operation, Supplier<T> request) {
+    return timed(method, () -> guard.call(operation, () -> transport.call(request)));
+  }
+
+  /**
+   * Record the call time of a client method in the {@code phm.kie.client} timer, tagged by method and outcome
+   */
+  private <T> T timed(String method, Supplier<T> call) {
+    long start = System.nanoTime();
+    boolean failed = true;
+    try {
+      T result = call.get();
+      failed = false;
+      return result;
+    } finally {
+      timer(method, failed ? "failure" : "success").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private Timer timer(String method, String outcome) {
+    return timers.computeIfAbsent(method + ":" + outcome, key -> Timer.builder("phm.kie.client")
+      .tag("method", method)
+      .tag("outcome", outcome)
+      .publishPercentileHistogram()
+      .publishPercentiles(0.5, 0.95, 0.99)
+      .register(meterRegistry));
+  }
+
+  /**
+   * Run a kie-server call off the caller thread. At most {@code kie.client.async.max-in-flight} calls
+   * are outstanding at any time: once the limit is reached the caller blocks until a call completes,
+   * which pushes back on the SEDA queues and, through them, on the Kafka consumer.
+   * When async calls are disabled the call runs on the caller thread and a completed future is returned.
+   */
+  private <T> CompletableFuture<T> submit(Supplier<T> call) {
+    if (!asyncEnabled) {
+      CompletableFuture<T> result = new CompletableFuture<T>();
+      try {
+        result.complete(call.get());
+      } catch (RuntimeException e) {
+        result.completeExceptionally(e);
+      }
+      return result;
+    }
+
+    inFlightPermits.acquireUninterruptibly();
+    try {
+      CompletableFuture<T> result = CompletableFuture.supplyAsync(call, asyncExecutor);
+      result.whenComplete((r, t) -> inFlightPermits.release());
+      return result;
+    } catch (RejectedExecutionException e) {
+      inFlightPermits.release();
+      throw e;
+    }
+  }
+
+  private static class KieThreadFactory implements ThreadFactory {
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "kie-async-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
   @PreDestroy
   public void closeResources(){
     LOG.info("=== Kie Client finalization ===\n");
-    kieServicesClient.close();
+    if (initThread != null) {
+      initThread.interrupt();
+    }
+    if (asyncExecutor != null) {
+      asyncExecutor.shutdown();
+    }
   }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.health_insurance.kie;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the decision cache hit/miss ratio and evictions on the management port ({@code /kie-decision-cache})
+ */
+@Component
+@ConditionalOnProperty(name = "kie.decision.cache.enabled", havingValue = "true")
+@ConfigurationProperties(prefix = "endpoints.kie-decision-cache")
+public class DecisionCacheEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+  private final DecisionResultCache cache;
+
+  public DecisionCacheEndpoint(DecisionResultCache cache) {
+    super("kie-decision-cache", false);
+    this.cache = cache;
+  }
+
+  @Override
+  public Map<String, Object> invoke() {
+    return cache.getStats();
+  }
+}
@@ -0,0 +1,260 @@
+package com.health_insurance.kie;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import org.kie.server.api.model.KieContainerResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded cache of decision results, keyed by container, release and the decision relevant fields of the
+ * input facts. Entries of a container are dropped as soon as a new release of it is reported.
+ *
+ * Result facts are cached as JSON snapshots and rebuilt on every hit, so callers never share (or change)
+ * each other's facts. The key fields must be the ones the rules read: by default the trigger type
+ * ({@code triggerId}) and the member, so a member's triggers of different types never share a result.
+ * 
+ * Enabled with {@code kie.decision.cache.enabled=true}.
+ */
+@Component
+@ConditionalOnProperty(name = "kie.decision.cache.enabled", havingValue = "true")
+public class DecisionResultCache {
+  private static final Logger LOG = LoggerFactory.getLogger(DecisionResultCache.class);
+
+  private static final String INSERTED_FACT_PREFIX = "isertedFactObject_";
+  private static final String UNKNOWN_RELEASE = "?";
+
+  @Value("${kie.decision.cache.max-size:100000}")
+  long maxSize;
+  @Value("${kie.decision.cache.ttl:60000}")
+  long ttlMillis;
+  // after-write: entries expire <ttl> after being computed, after-access: <ttl> after last being read
+  @Value("${kie.decision.cache.expiry:after-write}")
+  String expiry;
+  // fields of the input facts the rules look at
+  @Value("${kie.decision.cache.fields:triggerId,memberId}")
+  String fields;
+
+  private final ObjectMapper mapper = new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+  private final Map<String, String> releases = new ConcurrentHashMap<>();
+  private final Map<Class<?>, List<Method>> keyGetters = new ConcurrentHashMap<>();
+  private List<String> keyFields;
+  private Cache<String, Map<String, Object>> cache;
+
+  @PostConstruct
+  public void initialize() {
+    keyFields = Arrays.stream(fields.split(",")).map(String::trim).filter(f -> !f.isEmpty()).sorted().collect(Collectors.toList());
+    if (keyFields.isEmpty()) {
+      throw new IllegalArgumentException("kie.decision.cache.fields must list the input fields the rules read");
+    }
+    Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(maxSize).recordStats();
+    if ("after-access".equals(expiry)) {
+      builder.expireAfterAccess(ttlMillis, TimeUnit.MILLISECONDS);
+    } else {
+      builder.expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS);
+    }
+    cache = builder.build();
+    LOG.info("\t decision cache: max size={}, ttl={}ms ({}), key fields={}", maxSize, ttlMillis, expiry, keyFields);
+  }
+
+  /**
+   * @return the canonical cache key of the facts, for the release currently known for the container
+   */
+  public String keyOf(String containerId, Map<String, Object> facts) {
+    StringBuilder key = new StringBuilder(containerId).append('/')
+      .append(releases.getOrDefault(containerId, UNKNOWN_RELEASE)).append('/');
+    // fact keys are ignored: only the content the rules look at matters
+    facts.values().stream()
+      .map(this::canonical)
+      .sorted()
+      .forEach(fact -> key.append(fact).append(';'));
+    return key.toString();
+  }
+
+  /**
+   * @return a copy of the cached result, with its own result facts, adapted to the given facts, or null on a miss
+   */
+  public Map<String, Object> get(String key, Map<String, Object> facts) {
+    Map<String, Object> cached = cache.getIfPresent(key);
+    if (cached == null) {
+      return null;
+    }
+    Map<String, Object> result = new HashMap<String, Object>(cached.size() + facts.size());
+    try {
+      for (Map.Entry<String, Object> entry : cached.entrySet()) {
+        result.put(entry.getKey(), thaw(entry.getValue()));
+      }
+    } catch (IOException e) {
+      LOG.warn("unable to rebuild the cached decision {}, recomputing it: {}", key, e.getMessage());
+      cache.invalidate(key);
+      return null;
+    }
+    // the inserted facts are the caller's own, not the ones of the call that filled the cache
+    facts.forEach((k, o) -> result.put(INSERTED_FACT_PREFIX + k, o));
+    return result;
+  }
+
+  public void put(String key, Map<String, Object> resultFacts) {
+    if (resultFacts.isEmpty()) {
+      return;
+    }
+    Map<String, Object> snapshot = new HashMap<String, Object>();
+    try {
+      for (Map.Entry<String, Object> entry : resultFacts.entrySet()) {
+        if (!entry.getKey().startsWith(INSERTED_FACT_PREFIX)) {
+          snapshot.put(entry.getKey(), freeze(entry.getValue()));
+        }
+      }
+    } catch (IOException e) {
+      LOG.warn("decision {} not cached: {}", key, e.getMessage());
+      return;
+    }
+    cache.put(key, Collections.unmodifiableMap(snapshot));
+  }
+
+  /**
+   * Record the deployed containers, dropping the cached results of any container whose release changed
+   */
+  public void updateReleases(List<KieContainerResource> containers) {
+    containers.forEach(container -> updateRelease(container.getContainerId(), String.valueOf(container.getReleaseId())));
+  }
+
+  public void updateRelease(String containerId, String releaseId) {
+    String previous = releases.put(containerId, releaseId);
+    if (previous != null && !previous.equals(releaseId)) {
+      LOG.info("container {} moved from {} to {}, invalidating its cached decisions", containerId, previous, releaseId);
+      invalidate(containerId);
+    } else if (previous == null) {
+      // entries cached before the release was known
+      invalidate(containerId);
+    }
+  }
+
+  public void invalidate(String containerId) {
+    String prefix = containerId + "/";
+    cache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+  }
+
+  public Map<String, Object> getStats() {
+    CacheStats stats = cache.stats();
+    Map<String, Object> result = new LinkedHashMap<String, Object>();
+    result.put("size", cache.estimatedSize());
+    result.put("hits", stats.hitCount());
+    result.put("misses", stats.missCount());
+    result.put("hitRatio", stats.hitRate());
+    result.put("missRatio", stats.missRate());
+    result.put("evictions", stats.evictionCount());
+    result.put("releases", new TreeMap<String, String>(releases));
+    return result;
+  }
+
+  public Cache<String, Map<String, Object>> getCache() {
+    return cache;
+  }
+
+  private String canonical(Object fact) {
+    StringBuilder canonical = new StringBuilder(fact.getClass().getSimpleName());
+    if (fact instanceof Map) {
+      keyFields.forEach(field -> canonical.append('|').append(field).append('=').append(((Map<?, ?>) fact).get(field)));
+      return canonical.toString();
+    }
+    List<Method> getters = gettersOf(fact.getClass());
+    for (int i = 0; i < keyFields.size(); i++) {
+      Object value;
+      try {
+        value = getters.get(i) == null ? null : getters.get(i).invoke(fact);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("unable to read " + keyFields.get(i) + " of " + fact.getClass().getName(), e);
+      }
+      canonical.append('|').append(keyFields.get(i)).append('=').append(value);
+    }
+    return canonical.toString();
+  }
+
+  /**
+   * @return the getters of the key fields, in key field order (null for a field the class does not have)
+   */
+  private List<Method> gettersOf(Class<?> type) {
+    return keyGetters.computeIfAbsent(type, t -> {
+      Map<String, Method> byName = new HashMap<>();
+      try {
+        for (PropertyDescriptor property : Introspector.getBeanInfo(t).getPropertyDescriptors()) {
+          byName.put(property.getName(), property.getReadMethod());
+        }
+      } catch (IntrospectionException e) {
+        throw new IllegalStateException("unable to read the properties of " + t.getName(), e);
+      }
+      List<Method> getters = new ArrayList<>(keyFields.size());
+      keyFields.forEach(field -> getters.add(byName.get(field)));
+      return getters;
+    });
+  }
+
+  private Object freeze(Object value) throws IOException {
+    if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+      return value;
+    }
+    if (value instanceof List) {
+      List<Object> frozen = new ArrayList<>(((List<?>) value).size());
+      for (Object item : (List<?>) value) {
+        frozen.add(freeze(item));
+      }
+      return Collections.unmodifiableList(frozen);
+    }
+    return new FrozenFact(value.getClass(), mapper.writeValueAsBytes(value));
+  }
+
+  private Object thaw(Object value) throws IOException {
+    if (value instanceof FrozenFact) {
+      FrozenFact fact = (FrozenFact) value;
+      return mapper.readValue(fact.json, fact.type);
+    }
+    if (value instanceof List) {
+      List<Object> thawed = new ArrayList<>(((List<?>) value).size());
+      for (Object item : (List<?>) value) {
+        thawed.add(thaw(item));
+      }
+      return thawed;
+    }
+    return value;
+  }
+
+  /**
+   * JSON snapshot of a cached result fact
+   */
+  private static final class FrozenFact {
+    private final Class<?> type;
+    private final byte[] json;
+
+    private FrozenFact(Class<?> type, byte[] json) {
+      this.type = type;
+      this.json = json;
+    }
+  }
+}
@@ -0,0 +1,87 @@
+package com.health_insurance.kie;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.command.BatchExecutionCommand;
+import org.kie.api.runtime.ExecutionResults;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieContainerSessionsPool;
+import org.kie.api.runtime.StatelessKieSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * In-process decision backend. Loads the rules kjar into a local {@link KieContainer} and runs
+ * the same batch commands sent to the remote kie-server on pooled stateless sessions.
+ * 
+ * Enabled with {@code kie.decision.mode=embedded}, on a build with the {@code embedded-decisions} Maven profile.
+ */
+@Service("embeddedDecisionEngine")
+@ConditionalOnProperty(name = "kie.decision.mode", havingValue = "embedded")
+public class EmbeddedDecisionEngine {
+  private static final Logger LOG = LoggerFactory.getLogger(EmbeddedDecisionEngine.class);
+
+  // groupId:artifactId:version of the rules kjar; empty means use the kjar(s) found on the classpath
+  @Value("${kie.decision.embedded.release-id:}")
+  String releaseId;
+  @Value("${kie.decision.embedded.pool-size:8}")
+  int poolSize;
+
+  private KieContainer kieContainer;
+  private KieContainerSessionsPool sessionsPool;
+
+  @PostConstruct
+  public void initialize() {
+    LOG.info("\n=== Initializing embedded decision engine ===\n");
+    KieServices kieServices = KieServices.Factory.get();
+
+    if (releaseId == null || releaseId.trim().isEmpty()) {
+      LOG.info("\t loading kie container from the classpath");
+      kieContainer = kieServices.getKieClasspathContainer();
+    } else {
+      String[] gav = releaseId.trim().split(":");
+      if (gav.length != 3) {
+        throw new IllegalArgumentException("kie.decision.embedded.release-id must be groupId:artifactId:version but was " + releaseId);
+      }
+      try {
+        Class.forName("org.kie.scanner.KieRepositoryScannerImpl");
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException("kie.decision.embedded.release-id needs kie-ci, build with -Dembedded");
+      }
+      LOG.info("\t loading kie container {}", releaseId);
+      kieContainer = kieServices.newKieContainer(kieServices.newReleaseId(gav[0], gav[1], gav[2]));
+    }
+    sessionsPool = kieContainer.newKieSessionsPool(poolSize);
+
+    LOG.info("=== Embedded decision engine ready (pool size {}) ===\n", poolSize);
+  }
+
+  /**
+   * Run a batch command on a pooled stateless session
+   * 
+   * @param sessionName name of the stateless session defined in the kjar
+   * @param batchCommand commands to execute
+   * @return {@link ExecutionResults} of the batch
+   */
+  public ExecutionResults execute(String sessionName, BatchExecutionCommand batchCommand) {
+    StatelessKieSession session = sessionsPool.newStatelessKieSession(sessionName);
+    return session.execute(batchCommand);
+  }
+
+  public ReleaseId getReleaseId() {
+    return kieContainer.getReleaseId();
+  }
+
+  @PreDestroy
+  public void closeResources() {
+    LOG.info("=== Embedded decision engine finalization ===\n");
+    sessionsPool.shutdown();
+    kieContainer.dispose();
+  }
+}
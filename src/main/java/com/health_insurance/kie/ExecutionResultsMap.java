@@ -0,0 +1,78 @@
+package com.health_insurance.kie;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import org.kie.api.runtime.ExecutionResults;
+
+/**
+ * Read-only {@link java.util.Map} view of {@link ExecutionResults}: values are looked up in the results
+ * when asked for, instead of being copied into a new map for every decision.
+ */
+class ExecutionResultsMap extends AbstractMap<String, Object> {
+
+  private final ExecutionResults results;
+
+  ExecutionResultsMap(ExecutionResults results) {
+    this.results = results;
+  }
+
+  @Override
+  public Object get(Object key) {
+    return key instanceof String ? results.getValue((String) key) : null;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return results.getIdentifiers().contains(key);
+  }
+
+  @Override
+  public Set<String> keySet() {
+    return new AbstractSet<String>() {
+      @Override
+      public Iterator<String> iterator() {
+        return results.getIdentifiers().iterator();
+      }
+
+      @Override
+      public int size() {
+        return results.getIdentifiers().size();
+      }
+    };
+  }
+
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    return new AbstractSet<Entry<String, Object>>() {
+      @Override
+      public Iterator<Entry<String, Object>> iterator() {
+        Iterator<String> ids = results.getIdentifiers().iterator();
+        return new Iterator<Entry<String, Object>>() {
+          @Override
+          public boolean hasNext() {
+            return ids.hasNext();
+          }
+
+          @Override
+          public Entry<String, Object> next() {
+            String id = ids.next();
+            return new SimpleImmutableEntry<String, Object>(id, results.getValue(id));
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return results.getIdentifiers().size();
+      }
+    };
+  }
+
+  @Override
+  public int size() {
+    return results.getIdentifiers().size();
+  }
+}
@@ -0,0 +1,177 @@
+package com.health_insurance.kie;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Circuit breaker and bulkhead around the kie-server calls, one pair per {@link Operation}, so a slow
+ * process server does not take the decision calls (or the admin calls) down with it.
+ *
+ * A call first asks its breaker for permission, then takes one of the operation's concurrent call slots,
+ * waiting at most {@code max-wait} ms for one. Failures and calls slower than {@code slow-call-threshold}
+ * open the breaker; while open, calls fail fast with {@link CallNotPermittedException} until
+ * {@code open-duration} has passed and a few half-open probes succeed.
+ *
+ * The slots of all operations together must fit in the transport's concurrent call permits: a call that
+ * got its slot never waits again, without a bound, on the transport.
+ */
+@Component
+public class KieCallGuard {
+  private static final Logger LOG = LoggerFactory.getLogger(KieCallGuard.class);
+
+  public enum Operation {
+    DECISION, PROCESS, ADMIN
+  }
+
+  @Value("${kie.resilience.enabled:true}")
+  boolean enabled;
+  @Value("${kie.resilience.failure-rate-threshold:50}")
+  float failureRateThreshold;
+  @Value("${kie.resilience.slow-call-rate-threshold:50}")
+  float slowCallRateThreshold;
+  @Value("${kie.resilience.sliding-window-size:20}")
+  int slidingWindowSize;
+  @Value("${kie.resilience.minimum-calls:10}")
+  int minimumCalls;
+  @Value("${kie.resilience.open-duration:10000}")
+  long openDuration;
+  @Value("${kie.resilience.half-open-calls:3}")
+  int halfOpenCalls;
+
+  @Autowired
+  KieServerTransport transport;
+
+  @Value("${kie.resilience.decision.max-concurrent:20}")
+  int decisionMaxConcurrent;
+  @Value("${kie.resilience.decision.max-wait:1000}")
+  long decisionMaxWait;
+  @Value("${kie.resilience.decision.slow-call-threshold:10000}")
+  long decisionSlowCallThreshold;
+  @Value("${kie.resilience.process.max-concurrent:28}")
+  int processMaxConcurrent;
+  @Value("${kie.resilience.process.max-wait:1000}")
+  long processMaxWait;
+  @Value("${kie.resilience.process.slow-call-threshold:10000}")
+  long processSlowCallThreshold;
+  @Value("${kie.resilience.admin.max-concurrent:2}")
+  int adminMaxConcurrent;
+  @Value("${kie.resilience.admin.max-wait:5000}")
+  long adminMaxWait;
+  @Value("${kie.resilience.admin.slow-call-threshold:10000}")
+  long adminSlowCallThreshold;
+
+  private final Map<Operation, CircuitBreaker> breakers = new EnumMap<>(Operation.class);
+  private final Map<Operation, Bulkhead> bulkheads = new EnumMap<>(Operation.class);
+
+  @PostConstruct
+  public void initialize() {
+    LOG.info("\t kie call guard: enabled={}, failure rate threshold={}%, open duration={}ms",
+      enabled, failureRateThreshold, openDuration);
+    register(Operation.DECISION, decisionMaxConcurrent, decisionMaxWait, decisionSlowCallThreshold);
+    register(Operation.PROCESS, processMaxConcurrent, processMaxWait, processSlowCallThreshold);
+    register(Operation.ADMIN, adminMaxConcurrent, adminMaxWait, adminSlowCallThreshold);
+
+    int slots = decisionMaxConcurrent + processMaxConcurrent + adminMaxConcurrent;
+    if (enabled && slots > transport.getMaxConcurrentCalls()) {
+      throw new IllegalStateException(String.format(
+        "kie.resilience bulkheads allow %s concurrent calls, more than kie.transport.max-concurrent-calls=%s",
+        slots, transport.getMaxConcurrentCalls()));
+    }
+  }
+
+  private void register(Operation operation, int maxConcurrent, long maxWait, long slowCallThreshold) {
+    String name = "kie-" + operation.name().toLowerCase();
+    CircuitBreaker breaker = CircuitBreaker.of(name, CircuitBreakerConfig.custom()
+      .failureRateThreshold(failureRateThreshold)
+      .slowCallRateThreshold(slowCallRateThreshold)
+      .slowCallDurationThreshold(Duration.ofMillis(slowCallThreshold))
+      .slidingWindowSize(slidingWindowSize)
+      .minimumNumberOfCalls(minimumCalls)
+      .waitDurationInOpenState(Duration.ofMillis(openDuration))
+      .permittedNumberOfCallsInHalfOpenState(halfOpenCalls)
+      .automaticTransitionFromOpenToHalfOpenEnabled(true)
+      // a full bulkhead is local back pressure, not a kie-server failure
+      .ignoreExceptions(BulkheadFullException.class)
+      .build());
+    breaker.getEventPublisher()
+      .onStateTransition(event -> LOG.warn("circuit breaker {}: {}", name, event.getStateTransition()));
+    breakers.put(operation, breaker);
+
+    bulkheads.put(operation, Bulkhead.of(name, BulkheadConfig.custom()
+      .maxConcurrentCalls(maxConcurrent)
+      .maxWaitDuration(Duration.ofMillis(maxWait))
+      .build()));
+  }
+
+  /**
+   * Run a kie-server call of the given operation through its breaker and bulkhead
+   *
+   * @throws CallNotPermittedException while the operation's breaker is open
+   * @throws BulkheadFullException when no call slot freed up within the operation's max wait
+   */
+  public <T> T call(Operation operation, Supplier<T> request) {
+    if (!enabled) {
+      return request.get();
+    }
+    return CircuitBreaker.decorateSupplier(breakers.get(operation),
+      Bulkhead.decorateSupplier(bulkheads.get(operation), request)).get();
+  }
+
+  /**
+   * Whether calls of the given operation are currently let through (breaker closed)
+   */
+  public boolean isClosed(Operation operation) {
+    return !enabled || breakers.get(operation).getState() == CircuitBreaker.State.CLOSED;
+  }
+
+  /**
+   * Number of calls of the given operation that can start right now without waiting for a slot
+   */
+  public int getAvailableCalls(Operation operation) {
+    return bulkheads.get(operation).getMetrics().getAvailableConcurrentCalls();
+  }
+
+  /**
+   * Whether the error is a fast-fail of the guard (open breaker or full bulkhead) rather than a
+   * failed kie-server call, i.e. the request was never sent and can safely be retried later
+   */
+  public static boolean isRejection(Throwable error) {
+    return error instanceof CallNotPermittedException || error instanceof BulkheadFullException;
+  }
+
+  public Map<String, Object> getStats() {
+    Map<String, Object> stats = new LinkedHashMap<String, Object>();
+    stats.put("enabled", enabled);
+    breakers.forEach((operation, breaker) -> {
+      Bulkhead bulkhead = bulkheads.get(operation);
+      Map<String, Object> operationStats = new LinkedHashMap<String, Object>();
+      operationStats.put("state", breaker.getState().name());
+      operationStats.put("failureRate", breaker.getMetrics().getFailureRate());
+      operationStats.put("slowCallRate", breaker.getMetrics().getSlowCallRate());
+      operationStats.put("bufferedCalls", breaker.getMetrics().getNumberOfBufferedCalls());
+      operationStats.put("notPermittedCalls", breaker.getMetrics().getNumberOfNotPermittedCalls());
+      operationStats.put("maxConcurrentCalls", bulkhead.getMetrics().getMaxAllowedConcurrentCalls());
+      operationStats.put("availableConcurrentCalls", bulkhead.getMetrics().getAvailableConcurrentCalls());
+      stats.put(operation.name().toLowerCase(), operationStats);
+    });
+    return stats;
+  }
+}
@@ -0,0 +1,29 @@
+package com.health_insurance.kie;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+/**
+ * Readiness of the kie client, reported as {@code kieClient} on the health endpoint: out of service while
+ * the client is still connecting to the kie-server in the background ({@code kie.client.init.mode=background}).
+ */
+@Component
+public class KieClientHealthIndicator extends AbstractHealthIndicator {
+
+  @Autowired
+  BusinessAutomationClient client;
+  @Autowired
+  KieServerTransport transport;
+
+  @Override
+  protected void doHealthCheck(Health.Builder builder) throws Exception {
+    if (client.isReady()) {
+      builder.up();
+    } else {
+      builder.outOfService();
+    }
+    builder.withDetail("kieServer", transport.kieServerUrl);
+  }
+}
@@ -0,0 +1,52 @@
+package com.health_insurance.kie;
+
+import javax.annotation.PostConstruct;
+
+import com.health_insurance.kie.KieCallGuard.Operation;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gauges for the kie-server client side: concurrent calls, circuit breakers, bulkheads and, when enabled,
+ * the decision cache. Call times are recorded by {@link BusinessAutomationClient} ({@code phm.kie.client}).
+ */
+@Component
+public class KieMetrics {
+
+  @Autowired
+  MeterRegistry registry;
+  @Autowired
+  KieServerTransport transport;
+  @Autowired
+  KieCallGuard guard;
+  // only present when kie.decision.cache.enabled=true
+  @Autowired(required = false)
+  DecisionResultCache decisionCache;
+
+  @PostConstruct
+  public void initialize() {
+    Gauge.builder("phm.kie.transport.calls.active", transport, KieServerTransport::getActiveCalls)
+      .register(registry);
+    Gauge.builder("phm.kie.transport.calls.waiting", transport, KieServerTransport::getWaitingCalls)
+      .register(registry);
+
+    for (Operation operation : Operation.values()) {
+      String name = operation.name().toLowerCase();
+      Gauge.builder("phm.kie.breaker.open", guard, g -> g.isClosed(operation) ? 0 : 1)
+        .tag("operation", name)
+        .register(registry);
+      Gauge.builder("phm.kie.bulkhead.available", guard, g -> g.getAvailableCalls(operation))
+        .tag("operation", name)
+        .register(registry);
+    }
+
+    if (decisionCache != null) {
+      CaffeineCacheMetrics.monitor(registry, decisionCache.getCache(), "kie-decision-cache");
+    }
+  }
+}
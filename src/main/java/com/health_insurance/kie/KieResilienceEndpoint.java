@@ -0,0 +1,27 @@
+package com.health_insurance.kie;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the kie-server circuit breaker states and bulkhead usage on the management port ({@code /kie-resilience})
+ */
+@Component
+@ConfigurationProperties(prefix = "endpoints.kie-resilience")
+public class KieResilienceEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+  private final KieCallGuard guard;
+
+  public KieResilienceEndpoint(KieCallGuard guard) {
+    super("kie-resilience", false);
+    this.guard = guard;
+  }
+
+  @Override
+  public Map<String, Object> invoke() {
+    return guard.getStats();
+  }
+}
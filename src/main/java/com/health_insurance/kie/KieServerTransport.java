@@ -0,0 +1,183 @@
+package com.health_insurance.kie;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import com.health_insurance.phm_model.Reminder;
+import com.health_insurance.phm_model.Response;
+import com.health_insurance.phm_model.Result;
+import com.health_insurance.phm_model.Task;
+import com.health_insurance.phm_model.TaskActorAssignment;
+import com.health_insurance.phm_model.Trigger;
+
+import org.kie.server.api.marshalling.Marshaller;
+import org.kie.server.api.marshalling.MarshallerFactory;
+import org.kie.server.api.marshalling.MarshallingFormat;
+import org.kie.server.client.KieServicesClient;
+import org.kie.server.client.KieServicesConfiguration;
+import org.kie.server.client.KieServicesFactory;
+import org.kie.server.client.ProcessServicesClient;
+import org.kie.server.client.QueryServicesClient;
+import org.kie.server.client.RuleServicesClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * HTTP transport to the kie-server. Owns the {@link KieServicesClient}, the typed service clients
+ * (created once instead of on every call) and a cap on the concurrent kie-server calls.
+ * 
+ * The kie-server REST client runs on {@link java.net.HttpURLConnection}: idle keep-alive connections
+ * are cached by the JDK per destination, up to {@code http.maxConnections} (5 by default). That is a JVM
+ * wide setting, read once, so it is set on the command line ({@code -Dhttp.maxConnections=50} in every
+ * deployment descriptor) and only checked here.
+ * Every call holds one of {@code kie.transport.max-concurrent-calls} permits while it runs, which bounds
+ * the requests in progress against the kie-server (not the sockets) and gives the active/waiting figures.
+ */
+@Component
+public class KieServerTransport {
+  private static final Logger LOG = LoggerFactory.getLogger(KieServerTransport.class);
+
+  @Value("${kie.server.url:http://localhost:8080/kie-server/services/rest/server}")
+  String kieServerUrl;
+  @Value("${kie.server.user:kieAdmin}")
+  String kieServerUser;
+  @Value("${kie.server.password}")
+  String kieServerPassword;
+
+  @Value("${kie.transport.max-concurrent-calls:${kie.transport.max-connections-per-route:50}}")
+  int maxConcurrentCalls;
+  // connect and read timeout of each kie-server request, applied by the kie client itself
+  @Value("${kie.transport.timeout:${kie.transport.socket-timeout:30000}}")
+  long timeout;
+  // kie-server capabilities (e.g. KieServer,BRM,BPM); when given the client does not ask the server for them
+  // on creation, so the startup does not wait for (or depend on) the kie-server
+  @Value("${kie.transport.capabilities:}")
+  String capabilities;
+
+  private static final MarshallingFormat FORMAT = MarshallingFormat.JSON;
+  private KieServicesConfiguration conf;
+  private KieServicesClient kieServicesClient;
+  private RuleServicesClient ruleServicesClient;
+  private ProcessServicesClient processServicesClient;
+  private QueryServicesClient queryServicesClient;
+  private Marshaller marshaller;
+
+  private Semaphore callPermits;
+  private final AtomicLong callCount = new AtomicLong();
+  private final AtomicLong callWaitNanos = new AtomicLong();
+
+  @PostConstruct
+  public void initialize() {
+    LOG.info("\t kie transport: max concurrent calls={}, timeout={}ms, JDK keep-alive cache={} connections",
+      maxConcurrentCalls, timeout, System.getProperty("http.maxConnections", "5"));
+    if (Integer.getInteger("http.maxConnections", 5) < maxConcurrentCalls) {
+      LOG.warn("the JDK keeps only {} idle kie-server connections for up to {} concurrent calls, the others reconnect: run with -Dhttp.maxConnections={}",
+        Integer.getInteger("http.maxConnections", 5), maxConcurrentCalls, maxConcurrentCalls);
+    }
+
+    conf = KieServicesFactory.newRestConfiguration(kieServerUrl, kieServerUser, kieServerPassword, timeout);
+
+    // If you use custom classes, such as Obj.class, add them to the configuration.
+    Set<Class<?>> extraClassList = new HashSet<Class<?>>();
+
+    //TODO: encapsulate this and expose to the callers
+    extraClassList.add(Task.class);
+    extraClassList.add(Reminder.class);
+    extraClassList.add(Result.class);
+    extraClassList.add(TaskActorAssignment.class);
+    extraClassList.add(Trigger.class);
+    extraClassList.add(Response.class);
+    conf.addExtraClasses(extraClassList);
+
+    conf.setMarshallingFormat(FORMAT);
+    if (capabilities != null && !capabilities.trim().isEmpty()) {
+      conf.setCapabilities(Arrays.stream(capabilities.split(",")).map(String::trim).collect(Collectors.toList()));
+    }
+    kieServicesClient = KieServicesFactory.newKieServicesClient(conf);
+    ruleServicesClient = kieServicesClient.getServicesClient(RuleServicesClient.class);
+    processServicesClient = kieServicesClient.getServicesClient(ProcessServicesClient.class);
+    queryServicesClient = kieServicesClient.getServicesClient(QueryServicesClient.class);
+    // used to build the per fact set payloads of a batched (script) call
+    marshaller = MarshallerFactory.getMarshaller(conf.getExtraClasses(), FORMAT, KieServerTransport.class.getClassLoader());
+
+    callPermits = new Semaphore(maxConcurrentCalls, true);
+  }
+
+  /**
+   * Run a kie-server request holding one of the concurrent call permits
+   */
+  public <T> T call(Supplier<T> request) {
+    long start = System.nanoTime();
+    callPermits.acquireUninterruptibly();
+    callWaitNanos.addAndGet(System.nanoTime() - start);
+    callCount.incrementAndGet();
+    try {
+      return request.get();
+    } finally {
+      callPermits.release();
+    }
+  }
+
+  public int getMaxConcurrentCalls() {
+    return maxConcurrentCalls;
+  }
+
+  public int getActiveCalls() {
+    return maxConcurrentCalls - callPermits.availablePermits();
+  }
+
+  public int getWaitingCalls() {
+    return callPermits.getQueueLength();
+  }
+
+  public Map<String, Object> getCallStats() {
+    int available = callPermits.availablePermits();
+    long calls = callCount.get();
+    Map<String, Object> stats = new LinkedHashMap<String, Object>();
+    stats.put("server", kieServerUrl);
+    stats.put("maxConcurrentCalls", maxConcurrentCalls);
+    stats.put("active", maxConcurrentCalls - available);
+    stats.put("waiting", callPermits.getQueueLength());
+    stats.put("available", available);
+    stats.put("totalCalls", calls);
+    stats.put("avgPermitWaitMicros", calls == 0 ? 0 : callWaitNanos.get() / calls / 1000);
+    return stats;
+  }
+
+  public KieServicesClient getKieServicesClient() {
+    return kieServicesClient;
+  }
+
+  public RuleServicesClient getRuleServicesClient() {
+    return ruleServicesClient;
+  }
+
+  public ProcessServicesClient getProcessServicesClient() {
+    return processServicesClient;
+  }
+
+  public QueryServicesClient getQueryServicesClient() {
+    return queryServicesClient;
+  }
+
+  public Marshaller getMarshaller() {
+    return marshaller;
+  }
+
+  @PreDestroy
+  public void closeResources() {
+    kieServicesClient.close();
+  }
+}
@@ -0,0 +1,27 @@
+package com.health_insurance.kie;
+
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the kie-server concurrent call stats on the management port ({@code /kie-transport})
+ */
+@Component
+@ConfigurationProperties(prefix = "endpoints.kie-transport")
+public class KieTransportEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+  private final KieServerTransport transport;
+
+  public KieTransportEndpoint(KieServerTransport transport) {
+    super("kie-transport", false);
+    this.transport = transport;
+  }
+
+  @Override
+  public Map<String, Object> invoke() {
+    return transport.getCallStats();
+  }
+}
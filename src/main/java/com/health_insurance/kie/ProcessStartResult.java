@@ -0,0 +1,40 @@
+package com.health_insurance.kie;
+
+/**
+ * Outcome of one process start inside a bulk start: either the new process instance id or the failure
+ */
+public class ProcessStartResult {
+
+  private final Long processInstanceId;
+  private final Throwable error;
+
+  private ProcessStartResult(Long processInstanceId, Throwable error) {
+    this.processInstanceId = processInstanceId;
+    this.error = error;
+  }
+
+  public static ProcessStartResult started(Long processInstanceId) {
+    return new ProcessStartResult(processInstanceId, null);
+  }
+
+  public static ProcessStartResult failed(Throwable error) {
+    return new ProcessStartResult(null, error);
+  }
+
+  public boolean isSuccess() {
+    return error == null;
+  }
+
+  public Long getProcessInstanceId() {
+    return processInstanceId;
+  }
+
+  public Throwable getError() {
+    return error;
+  }
+
+  @Override
+  public String toString() {
+    return isSuccess() ? "started(" + processInstanceId + ")" : "failed(" + error + ")";
+  }
+}
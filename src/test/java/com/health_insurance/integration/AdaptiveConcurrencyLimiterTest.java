@@ -0,0 +1,97 @@
+package com.health_insurance.integration;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long MS = 1000000L;
+
+    @Test
+    public void growsWhileSaturatedWithBacklog() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 4, 2.0, 0.5, () -> 10);
+        for (int i = 0; i < 10; i++) {
+            saturateAndRelease(limiter, 10 * MS, false);
+        }
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    public void doesNotGrowWithoutBacklog() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 8, 2.0, 0.5, () -> 0);
+        for (int i = 0; i < 10; i++) {
+            saturateAndRelease(limiter, 10 * MS, false);
+        }
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void backsOffOnErrorsAndSlowCalls() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 16, 2.0, 0.5, () -> 10);
+        for (int i = 0; i < 20; i++) {
+            saturateAndRelease(limiter, 1 * MS, false);
+        }
+        assertEquals(16, limiter.getLimit());
+
+        Thread.sleep(5);
+        limiter.acquire();
+        limiter.release(1 * MS, true);
+        assertEquals(8, limiter.getLimit());
+
+        Thread.sleep(5);
+        limiter.acquire();
+        limiter.release(50 * MS, false);
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void freePermitsGoToTheWaitingLanesByWeight() throws Exception {
+        Map<String, Integer> weights = new HashMap<>();
+        weights.put("high", 3);
+        weights.put("low", 1);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 2.0, 0.5, () -> 0, weights);
+        limiter.acquire("high");
+
+        List<String> granted = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String lane = i % 2 == 0 ? "high" : "low";
+            Thread caller = new Thread(() -> {
+                limiter.acquire(lane);
+                granted.add(lane);
+                limiter.release(MS, false);
+            });
+            caller.start();
+            callers.add(caller);
+        }
+        while (limiter.getWaiting() < 8) {
+            Thread.sleep(1);
+        }
+        limiter.release(MS, false);
+        for (Thread caller : callers) {
+            caller.join(5000);
+        }
+
+        assertEquals(8, granted.size());
+        assertEquals(3, Collections.frequency(granted.subList(0, 4), "high"));
+    }
+
+    private static void saturateAndRelease(AdaptiveConcurrencyLimiter limiter, long latency, boolean failed) {
+        int permits = limiter.getLimit();
+        for (int i = 0; i < permits; i++) {
+            limiter.acquire();
+        }
+        limiter.release(latency, failed);
+        for (int i = 1; i < permits; i++) {
+            limiter.release(latency, failed);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.health_insurance.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class MemberLanesTest {
+
+    @Test
+    public void sameMemberAlwaysGetsTheSameLane() {
+        assertEquals(MemberLanes.laneOf("0987654321", 8), MemberLanes.laneOf("0987654321", 8));
+    }
+
+    @Test
+    public void lanesStayWithinBounds() {
+        for (int i = 0; i < 10000; i++) {
+            int lane = MemberLanes.laneOf("member-" + i, 7);
+            assertTrue(lane >= 0 && lane < 7);
+        }
+        assertEquals(0, MemberLanes.laneOf(null, 7));
+    }
+}
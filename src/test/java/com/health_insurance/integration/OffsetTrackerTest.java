@@ -0,0 +1,122 @@
+package com.health_insurance.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.kafka.clients.consumer.MockConsumer;
+import org.apache.kafka.clients.consumer.OffsetResetStrategy;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.Test;
+
+public class OffsetTrackerTest {
+
+    private static final TopicPartition P0 = new TopicPartition("phm-trigger", 0);
+    private static final TopicPartition P1 = new TopicPartition("phm-trigger", 1);
+
+    @Test
+    public void idlePartitionsAreCommittedOnPoll() {
+        OffsetTracker tracker = newTracker();
+        MockConsumer<String, Object> consumer = newConsumer(P0);
+        tracker.dispatchedRecord(record(P0, 0));
+        tracker.dispatchedRecord(record(P0, 1));
+        tracker.completedRecord(record(P0, 1));
+        tracker.polled(consumer);
+        assertEquals(0, consumer.committed(P0).offset());
+
+        // no record since: the next poll commits the completed tail anyway
+        tracker.completedRecord(record(P0, 0));
+        tracker.polled(consumer);
+        assertEquals(2, consumer.committed(P0).offset());
+    }
+
+    @Test
+    public void revokedPartitionsAreCommittedThenForgotten() {
+        OffsetTracker tracker = newTracker();
+        MockConsumer<String, Object> consumer = newConsumer(P0, P1);
+        tracker.dispatchedRecord(record(P0, 0));
+        tracker.dispatchedRecord(record(P1, 0));
+        tracker.dispatchedRecord(record(P1, 1));
+        tracker.completedRecord(record(P1, 0));
+
+        tracker.revoked(consumer, Collections.singleton(P1));
+        assertEquals(1, consumer.committed(P1).offset());
+
+        // P1 moved to another consumer: a late completion must not show up in this consumer's commits
+        // (the mock consumer refuses to commit a partition it is not assigned)
+        consumer.assign(Collections.singleton(P0));
+        tracker.completedRecord(record(P1, 1));
+        tracker.completedRecord(record(P0, 0));
+        tracker.polled(consumer);
+        assertEquals(1, consumer.committed(P0).offset());
+    }
+
+    @Test
+    public void failedRecordsPauseThenRewindTheirPartition() {
+        OffsetTracker tracker = newTracker();
+        tracker.retryBackoff = Long.MAX_VALUE;
+        MockConsumer<String, Object> consumer = newConsumer(P0);
+        for (long offset = 0; offset < 3; offset++) {
+            tracker.dispatchedRecord(record(P0, offset));
+        }
+        consumer.seek(P0, 3);
+        tracker.completedRecord(record(P0, 0));
+        tracker.completedRecord(record(P0, 2));
+        assertEquals(1, tracker.failedRecord(record(P0, 1)));
+
+        tracker.polled(consumer);
+        assertEquals(Collections.singleton(P0), consumer.paused());
+        assertEquals(1, consumer.committed(P0).offset());
+
+        tracker.retryBackoff = 0;
+        tracker.polled(consumer);
+        assertTrue(consumer.paused().isEmpty());
+        assertEquals(1, consumer.position(P0));
+
+        // redelivered and went through
+        tracker.dispatchedRecord(record(P0, 1));
+        assertEquals(2, tracker.failedRecord(record(P0, 1)));
+        tracker.completedRecord(record(P0, 1));
+        tracker.polled(consumer);
+        assertEquals(3, consumer.committed(P0).offset());
+    }
+
+    @Test
+    public void recordsOfUntrackedPartitionsAreLeftToTheirOwner() {
+        OffsetTracker tracker = newTracker();
+        assertEquals(0, tracker.failedRecord(record(P1, 5)));
+        Map<String, Object> notFromKafka = new HashMap<>();
+        assertEquals(-1, tracker.failedRecord(notFromKafka));
+    }
+
+    private static OffsetTracker newTracker() {
+        OffsetTracker tracker = new OffsetTracker();
+        tracker.enabled = true;
+        tracker.commitBatchSize = 1;
+        tracker.commitInterval = 0;
+        tracker.retryBackoff = 0;
+        return tracker;
+    }
+
+    private static MockConsumer<String, Object> newConsumer(TopicPartition... partitions) {
+        MockConsumer<String, Object> consumer = new MockConsumer<>(OffsetResetStrategy.EARLIEST);
+        consumer.assign(Arrays.asList(partitions));
+        for (TopicPartition partition : partitions) {
+            consumer.seek(partition, 0);
+        }
+        return consumer;
+    }
+
+    private static Map<String, Object> record(TopicPartition partition, long offset) {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put(KafkaConstants.TOPIC, partition.topic());
+        headers.put(KafkaConstants.PARTITION, partition.partition());
+        headers.put(KafkaConstants.OFFSET, offset);
+        return headers;
+    }
+}
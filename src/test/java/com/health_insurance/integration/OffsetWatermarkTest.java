@@ -0,0 +1,120 @@
+package com.health_insurance.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class OffsetWatermarkTest {
+
+    @Test
+    public void watermarkStopsAtTheLowestRecordInFlight() {
+        OffsetWatermark watermark = new OffsetWatermark();
+        for (long offset = 10; offset < 15; offset++) {
+            watermark.dispatched(offset);
+        }
+        watermark.completed(11);
+        watermark.completed(12);
+        assertEquals(10, watermark.watermark());
+
+        watermark.completed(10);
+        assertEquals(13, watermark.watermark());
+
+        watermark.completed(14);
+        watermark.completed(13);
+        assertEquals(15, watermark.watermark());
+    }
+
+    @Test
+    public void offsetGapsDoNotHoldTheWatermarkBack() {
+        OffsetWatermark watermark = new OffsetWatermark();
+        watermark.dispatched(100);
+        watermark.dispatched(102);
+        watermark.completed(100);
+        assertEquals(102, watermark.watermark());
+        watermark.completed(102);
+        assertEquals(103, watermark.watermark());
+    }
+
+    @Test
+    public void rewindStartsOver() {
+        OffsetWatermark watermark = new OffsetWatermark();
+        watermark.dispatched(50);
+        watermark.dispatched(51);
+        watermark.dispatched(40);
+        assertEquals(40, watermark.watermark());
+        watermark.completed(40);
+        assertEquals(41, watermark.watermark());
+    }
+
+    @Test
+    public void commitsAreBatched() {
+        OffsetWatermark watermark = new OffsetWatermark();
+        watermark.committed(-1);
+        for (long offset = 0; offset < 3; offset++) {
+            watermark.dispatched(offset);
+            watermark.completed(offset);
+        }
+        assertEquals(-1, watermark.commitDue(5, Long.MAX_VALUE));
+        assertEquals(3, watermark.commitDue(3, Long.MAX_VALUE));
+        watermark.committed(3);
+        assertEquals(-1, watermark.commitDue(0, 0));
+    }
+
+    @Test
+    public void largeOffsetGapsAreRebased() {
+        OffsetWatermark watermark = new OffsetWatermark();
+        watermark.dispatched(0);
+        watermark.completed(0);
+        watermark.dispatched(5_000_000_000L);
+        assertEquals(5_000_000_000L, watermark.watermark());
+        watermark.dispatched(5_000_000_001L);
+        watermark.completed(5_000_000_000L);
+        assertEquals(5_000_000_001L, watermark.watermark());
+    }
+
+    @Test
+    public void failedRecordsHoldTheWatermarkUntilRedelivered() {
+        OffsetWatermark watermark = new OffsetWatermark();
+        for (long offset = 0; offset < 4; offset++) {
+            watermark.dispatched(offset);
+        }
+        watermark.completed(0);
+        assertEquals(1, watermark.failed(2));
+        assertEquals(1, watermark.failed(1));
+        watermark.completed(3);
+        assertEquals(1, watermark.watermark());
+        assertTrue(watermark.hasFailed());
+
+        assertEquals(-1, watermark.rewindDue(Long.MAX_VALUE));
+        assertEquals(1, watermark.rewindDue(0));
+        assertFalse(watermark.hasFailed());
+
+        // redelivered from offset 1: 1 fails again, 2 goes through
+        watermark.dispatched(1);
+        watermark.dispatched(2);
+        assertEquals(2, watermark.failed(1));
+        watermark.completed(2);
+        assertEquals(1, watermark.watermark());
+        watermark.dispatched(1);
+        watermark.completed(1);
+        assertEquals(4, watermark.watermark());
+        assertFalse(watermark.hasFailed());
+    }
+
+    @Test
+    public void completedRecordsDoNotFail() {
+        OffsetWatermark watermark = new OffsetWatermark();
+        watermark.dispatched(5);
+        watermark.dispatched(6);
+        watermark.completed(5);
+        assertEquals(0, watermark.failed(5));
+        assertFalse(watermark.hasFailed());
+        // a record failing before its dispatch is put in flight
+        assertEquals(1, watermark.failed(7));
+        assertEquals(6, watermark.watermark());
+        watermark.completed(6);
+        assertEquals(7, watermark.watermark());
+    }
+}
@@ -0,0 +1,70 @@
+package com.health_insurance.integration;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import com.health_insurance.phm_model.Trigger;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.SimpleBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Test;
+
+public class PriorityClassifierTest {
+
+    private final CamelContext context = new DefaultCamelContext();
+    private final PriorityClassifier classifier = new PriorityClassifier(Arrays.asList(
+        new PriorityClassifier.Lane("urgent", SimpleBuilder.simple("${body.memberId} starts with 'VIP'"), 6),
+        new PriorityClassifier.Lane("normal", SimpleBuilder.simple("${body.triggerId} < 1000"), 3),
+        new PriorityClassifier.Lane("bulk", null, 1)));
+
+    @Test
+    public void firstMatchingLaneWins() {
+        assertEquals("urgent", classifier.laneOf(exchange(1, "VIP-1")));
+        assertEquals("normal", classifier.laneOf(exchange(1, "member-1")));
+        assertEquals("bulk", classifier.laneOf(exchange(5000, "member-1")));
+    }
+
+    @Test
+    public void classificationIsKeptInAHeader() {
+        Exchange exchange = exchange(5000, "VIP-2");
+        classifier.process(exchange);
+        assertEquals("urgent", exchange.getIn().getHeader(PriorityClassifier.PRIORITY_HEADER));
+    }
+
+    @Test
+    public void consumersAreSharedByWeightWithAtLeastOnePerLane() {
+        assertEquals(5, classifier.consumersOf(classifier.getLanes().get(0), 10));
+        assertEquals(3, classifier.consumersOf(classifier.getLanes().get(1), 10));
+        assertEquals(2, classifier.consumersOf(classifier.getLanes().get(2), 10));
+        assertEquals(1, classifier.consumersOf(classifier.getLanes().get(2), 2));
+    }
+
+    @Test
+    public void consumerSharesAddUpToTheTotal() {
+        for (int total = 3; total <= 20; total++) {
+            int given = 0;
+            for (PriorityClassifier.Lane lane : classifier.getLanes()) {
+                given += classifier.consumersOf(lane, total);
+            }
+            assertEquals(total, given);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void onlyTheLastLaneMayGoWithoutRule() {
+        new PriorityClassifier(Arrays.asList(new PriorityClassifier.Lane("urgent", null, 1), new PriorityClassifier.Lane("bulk", null, 1)));
+    }
+
+    private Exchange exchange(int triggerId, String memberId) {
+        Trigger trigger = new Trigger();
+        trigger.setTriggerId(triggerId);
+        trigger.setMemberId(memberId);
+        Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setBody(trigger);
+        return exchange;
+    }
+}
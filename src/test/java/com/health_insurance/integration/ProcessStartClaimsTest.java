@@ -0,0 +1,31 @@
+package com.health_insurance.integration;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.apache.camel.processor.idempotent.MemoryIdempotentRepository;
+import org.junit.Test;
+
+public class ProcessStartClaimsTest {
+
+    @Test
+    public void anOutcomeIsClaimedOnceUntilReleased() {
+        ProcessStartClaims claims = new ProcessStartClaims(MemoryIdempotentRepository.memoryIdempotentRepository(), 60000);
+        String claim = claims.claim("184:test123");
+        assertNotNull(claim);
+        assertNull(claims.claim("184:test123"));
+        assertNotNull(claims.claim("185:test123"));
+
+        // the start failed: the redelivery claims it again
+        claims.release(claim);
+        assertNotNull(claims.claim("184:test123"));
+    }
+
+    @Test
+    public void claimsExpireAfterTheWindow() throws Exception {
+        ProcessStartClaims claims = new ProcessStartClaims(MemoryIdempotentRepository.memoryIdempotentRepository(), 100);
+        assertNotNull(claims.claim("184:test123"));
+        Thread.sleep(120);
+        assertNotNull(claims.claim("184:test123"));
+    }
+}
@@ -0,0 +1,97 @@
+package com.health_insurance.integration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.Test;
+
+public class TriggerDedupRepositoryTest {
+
+    @Test
+    public void repeatedKeysAreRejectedWithinTheWindow() throws Exception {
+        TriggerDedupRepository repository = newRepository(60000, 1000, "");
+        assertTrue(repository.add("184:test123"));
+        assertFalse(repository.add("184:test123"));
+        assertTrue(repository.add("185:test123"));
+        assertTrue(repository.contains("184:test123"));
+    }
+
+    @Test
+    public void oldestGenerationIsDroppedWhenFull() throws Exception {
+        TriggerDedupRepository repository = newRepository(60000, 32, "");
+        assertTrue(repository.add("key-0"));
+        // two full generations later key-0 is forgotten
+        repository.processed("key-0");
+        for (int i = 1; i <= 32; i++) {
+            repository.add("key-" + i);
+            repository.processed("key-" + i);
+        }
+        assertFalse(repository.contains("key-0"));
+        assertTrue(repository.contains("key-32"));
+    }
+
+    @Test
+    public void keysSurviveARestartThroughTheFile() throws Exception {
+        File file = File.createTempFile("dedup", ".bin");
+        file.deleteOnExit();
+        TriggerDedupRepository repository = newRepository(60000, 1000, file.getPath());
+        repository.add("184:test123");
+        repository.processed("184:test123");
+        repository.stop();
+
+        TriggerDedupRepository restarted = newRepository(60000, 1000, file.getPath());
+        assertEquals(1, restarted.size());
+        assertFalse(restarted.add("184:test123"));
+    }
+
+    @Test
+    public void keysInFlightAreNotSaved() throws Exception {
+        File file = File.createTempFile("dedup", ".bin");
+        file.deleteOnExit();
+        TriggerDedupRepository repository = newRepository(60000, 1000, file.getPath());
+        assertTrue(repository.add("184:test123"));
+        assertTrue(repository.add("185:test123"));
+        repository.remove("185:test123");
+        assertTrue(repository.add("185:test123"));
+        repository.stop();
+
+        TriggerDedupRepository restarted = newRepository(60000, 1000, file.getPath());
+        assertEquals(0, restarted.size());
+        assertTrue(restarted.add("184:test123"));
+    }
+
+    @Test
+    public void keysInFlightExpireAfterTheWindow() throws Exception {
+        TriggerDedupRepository repository = newRepository(100, 1000, "");
+        assertTrue(repository.add("184:test123"));
+        assertFalse(repository.add("184:test123"));
+        Thread.sleep(150);
+        // never processed nor removed: its trigger was lost, a redelivery goes through
+        assertTrue(repository.add("184:test123"));
+        assertEquals(1, repository.inFlightSize());
+    }
+
+    @Test
+    public void oldestKeysInFlightGoFirstWhenFull() throws Exception {
+        TriggerDedupRepository repository = newRepository(60000, 32, "");
+        for (int i = 0; i <= 16; i++) {
+            assertTrue(repository.add("key-" + i));
+        }
+        assertTrue(repository.add("key-17"));
+        assertEquals(16, repository.inFlightSize());
+        assertFalse(repository.contains("key-0"));
+        assertTrue(repository.contains("key-17"));
+    }
+
+    private static TriggerDedupRepository newRepository(long window, int maxEntries, String file) throws Exception {
+        TriggerDedupRepository repository = new TriggerDedupRepository();
+        repository.windowMillis = window;
+        repository.maxEntries = maxEntries;
+        repository.file = file;
+        repository.start();
+        return repository;
+    }
+}
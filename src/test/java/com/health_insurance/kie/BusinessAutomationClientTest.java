@@ -0,0 +1,62 @@
+package com.health_insurance.kie;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.Test;
+import org.kie.server.api.commands.CommandScript;
+import org.kie.server.api.marshalling.Marshaller;
+import org.kie.server.api.model.KieServiceResponse.ResponseType;
+import org.kie.server.api.model.ServiceResponse;
+import org.kie.server.api.model.ServiceResponsesList;
+import org.kie.server.client.KieServicesClient;
+
+public class BusinessAutomationClientTest {
+
+  @Test
+  public void shortBatchResponsesAreFailedDecisions() {
+    List<ServiceResponse<? extends Object>> responses = new ArrayList<>();
+    responses.add(new ServiceResponse<Object>(ResponseType.FAILURE, "rules failed"));
+    BusinessAutomationClient client = newClient(new ServiceResponsesList(responses));
+
+    List<Map<String, Object>> factSets = Arrays.asList(
+      Collections.<String, Object>singletonMap("1", "a"),
+      Collections.<String, Object>singletonMap("1", "b"),
+      Collections.<String, Object>singletonMap("1", "c"));
+    List<Map<String, Object>> results = client.executeBatch("container", "session", factSets);
+
+    assertEquals(3, results.size());
+    assertEquals("rules failed", BusinessAutomationClient.decisionErrorOf(results.get(0)));
+    assertEquals("no response for this decision", BusinessAutomationClient.decisionErrorOf(results.get(1)));
+    assertEquals("no response for this decision", BusinessAutomationClient.decisionErrorOf(results.get(2)));
+  }
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private static BusinessAutomationClient newClient(ServiceResponsesList scriptResponses) {
+    BusinessAutomationClient client = new BusinessAutomationClient();
+    client.meterRegistry = new SimpleMeterRegistry();
+    client.guard = mock(KieCallGuard.class);
+    when(client.guard.call(any(), any())).thenAnswer(call -> ((Supplier) call.getArguments()[1]).get());
+    client.transport = mock(KieServerTransport.class);
+    when(client.transport.call(any())).thenAnswer(call -> ((Supplier) call.getArguments()[0]).get());
+
+    Marshaller marshaller = mock(Marshaller.class);
+    when(marshaller.marshall(any())).thenReturn("{}");
+    when(client.transport.getMarshaller()).thenReturn(marshaller);
+    KieServicesClient kieServicesClient = mock(KieServicesClient.class);
+    when(kieServicesClient.executeScript(any(CommandScript.class))).thenReturn(scriptResponses);
+    when(client.transport.getKieServicesClient()).thenReturn(kieServicesClient);
+    return client;
+  }
+}
@@ -0,0 +1,102 @@
+package com.health_insurance.kie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DecisionResultCacheTest {
+
+  private DecisionResultCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new DecisionResultCache();
+    cache.maxSize = 100;
+    cache.ttlMillis = 60000;
+    cache.expiry = "after-write";
+    cache.fields = "triggerId,memberId";
+    cache.initialize();
+  }
+
+  @Test
+  public void keyIgnoresFieldsTheRulesDoNotLookAt() {
+    assertEquals(cache.keyOf("PHM-Rules", facts("1", "184", "test123", "a")),
+      cache.keyOf("PHM-Rules", facts("2", "184", "test123", "b")));
+    assertNotEquals(cache.keyOf("PHM-Rules", facts("1", "184", "test123", "a")),
+      cache.keyOf("PHM-Rules", facts("1", "184", "test124", "a")));
+  }
+
+  @Test
+  public void triggerTypesOfAMemberDoNotShareAnEntry() {
+    assertNotEquals(cache.keyOf("PHM-Rules", facts("1", "184", "test123", "a")),
+      cache.keyOf("PHM-Rules", facts("1", "185", "test123", "a")));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void hitsDoNotShareResultFacts() {
+    Map<String, Object> facts = facts("1", "184", "test123", "a");
+    String key = cache.keyOf("PHM-Rules", facts);
+    Map<String, Object> response = new HashMap<>();
+    response.put("actor", "Peter");
+    List<Object> responses = new ArrayList<>();
+    responses.add(response);
+    cache.put(key, Collections.singletonMap("resultFactObjects", responses));
+    response.put("actor", "changed after put");
+
+    List<Map<String, Object>> first = (List<Map<String, Object>>) cache.get(key, facts).get("resultFactObjects");
+    first.get(0).put("actor", "changed by a caller");
+    List<Map<String, Object>> second = (List<Map<String, Object>>) cache.get(key, facts).get("resultFactObjects");
+    assertNotSame(first.get(0), second.get(0));
+    assertEquals("Peter", second.get(0).get("actor"));
+  }
+
+  @Test
+  public void hitCarriesTheCallersOwnInsertedFacts() {
+    Map<String, Object> first = facts("1", "184", "test123", "a");
+    String key = cache.keyOf("PHM-Rules", first);
+    Map<String, Object> result = new HashMap<>();
+    result.put("isertedFactObject_1", first.get("1"));
+    result.put("resultFactObjects", Collections.emptyList());
+    cache.put(key, result);
+
+    Map<String, Object> second = facts("2", "184", "test123", "b");
+    Map<String, Object> hit = cache.get(cache.keyOf("PHM-Rules", second), second);
+    assertEquals(second.get("2"), hit.get("isertedFactObject_2"));
+    assertNull(hit.get("isertedFactObject_1"));
+  }
+
+  @Test
+  public void newReleaseInvalidatesTheContainer() {
+    cache.updateRelease("PHM-Rules", "com.health-insurance:PHM-Rules:1.0.0");
+    Map<String, Object> facts = facts("1", "184", "test123", "a");
+    String key = cache.keyOf("PHM-Rules", facts);
+    cache.put(key, Collections.singletonMap("firedRules", 3));
+
+    cache.updateRelease("PHM-Rules", "com.health-insurance:PHM-Rules:1.0.0");
+    assertEquals(3, cache.get(key, facts).get("firedRules"));
+
+    cache.updateRelease("PHM-Rules", "com.health-insurance:PHM-Rules:1.0.1");
+    assertNull(cache.get(key, facts));
+  }
+
+  private static Map<String, Object> facts(String factKey, String triggerId, String memberId, String other) {
+    Map<String, Object> trigger = new HashMap<>();
+    trigger.put("triggerId", triggerId);
+    trigger.put("memberId", memberId);
+    trigger.put("receivedAt", other);
+    Map<String, Object> facts = new HashMap<>();
+    facts.put(factKey, trigger);
+    return facts;
+  }
+}
@@ -0,0 +1,41 @@
+package com.health_insurance.kie;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.drools.core.runtime.impl.ExecutionResultImpl;
+import org.junit.Test;
+
+public class ExecutionResultsMapTest {
+
+  @Test
+  public void readsTheExecutionResults() {
+    ExecutionResultImpl results = new ExecutionResultImpl();
+    results.setResult("firedRules", 2);
+    results.setResult("resultFactObjects", Arrays.asList("a", "b"));
+    Map<String, Object> view = new ExecutionResultsMap(results);
+
+    assertEquals(2, view.size());
+    assertEquals(2, view.get("firedRules"));
+    assertEquals(Arrays.asList("a", "b"), view.get("resultFactObjects"));
+    assertTrue(view.containsKey("firedRules"));
+    assertFalse(view.containsKey("isertedFactObject_1"));
+    assertNull(view.get("isertedFactObject_1"));
+  }
+
+  @Test
+  public void copiesLikeAnyMap() {
+    ExecutionResultImpl results = new ExecutionResultImpl();
+    results.setResult("firedRules", 1);
+
+    Map<String, Object> copy = new HashMap<String, Object>(new ExecutionResultsMap(results));
+    assertEquals(1, copy.size());
+    assertEquals(1, copy.get("firedRules"));
+  }
+}